@@ -0,0 +1,247 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.jdbc.Work;
+
+/**
+ * Guards bulk imports of IDs generated on other nodes against duplicates, so a
+ * duplicate does not abort a whole commit batch with a constraint violation.
+ * <p>
+ * All IDs of the table are kept in a {@link UniqueIDBloomFilter}, pre-warmed
+ * by a streaming scan of the table and updated as batches commit. IDs the
+ * filter might contain are checked exactly against the table before insert.
+ * <p>
+ * A filter persisted in a directory is reopened on restart, together with the
+ * highest ID scanned or imported so far. As time-ordered IDs of rows written by
+ * other means are mostly newer, only rows above that high-water mark are
+ * scanned again.
+ * <p>
+ * The filter is only a hint: rows written by other means below the high-water
+ * mark, or deleted rows, are missed by it. Inserts therefore skip conflicting
+ * IDs in the table instead of relying on the filter being complete.
+ */
+public class DuplicateGuard {
+
+    private static final int FETCH_SIZE = 10000;
+
+    private static final String HIGH_WATER_MARK_FILE = "high-water-mark";
+
+    private final EntityManagerFactory emf;
+    private final String               table;
+    private final UniqueIDBloomFilter  filter;
+    private final Path                 directory;
+
+    private UUID highWaterMark;
+
+    private DuplicateGuard(final EntityManagerFactory emf,
+                           final String table,
+                           final UniqueIDBloomFilter filter,
+                           final Path directory,
+                           final UUID highWaterMark) {
+        this.emf           = emf;
+        this.table         = table;
+        this.filter        = filter;
+        this.directory     = directory;
+        this.highWaterMark = highWaterMark;
+    }
+
+    /**
+     * Opens the guard for the table of the entity and scans the rows not yet
+     * contained in the filter.
+     *
+     * @param directory                the directory to persist the filter in,
+     *                                 or null to keep it on the heap only
+     * @param expectedSize             the expected number of rows
+     * @param falsePositiveProbability the false positive probability of the
+     *                                 filter, i.e. the share of IDs that need
+     *                                 an exact check
+     */
+    public static DuplicateGuard open(final EntityManagerFactory emf,
+                                      final Class<?> entityClass,
+                                      final Path directory,
+                                      final int expectedSize,
+                                      final double falsePositiveProbability) throws IOException {
+        checkNotNull(emf, "emf must not be null");
+        final String table = EntityTables.qualifiedName(entityClass);
+
+        final UniqueIDBloomFilter filter;
+        UUID                      highWaterMark = null;
+        if (directory == null) {
+            filter = UniqueIDBloomFilter.create(expectedSize, falsePositiveProbability);
+        } else {
+            filter = UniqueIDBloomFilter.open(directory, expectedSize, falsePositiveProbability);
+            final Path highWaterMarkFile = directory.resolve(HIGH_WATER_MARK_FILE);
+            if (!filter.isEmpty() && Files.exists(highWaterMarkFile)) {
+                highWaterMark = UUID.fromString(Files.readString(highWaterMarkFile, StandardCharsets.US_ASCII)
+                                                     .trim());
+            }
+        }
+        final DuplicateGuard guard = new DuplicateGuard(emf, table, filter, directory, highWaterMark);
+        guard.catchUp();
+        return guard;
+    }
+
+    /**
+     * Adds the rows above the high-water mark to the filter, all rows on the
+     * first run.
+     *
+     * @return the number of rows scanned
+     */
+    public long catchUp() throws IOException {
+        final long[] scanned = new long[1];
+        doWork(connection -> {
+            final String sql = highWaterMark == null ? String.format("SELECT id FROM %s", table)
+                                                     : String.format("SELECT id FROM %s WHERE id > ?", table);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(FETCH_SIZE);
+                if (highWaterMark != null) {
+                    statement.setObject(1, highWaterMark);
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        final UUID id = resultSet.getObject(1, UUID.class);
+                        filter.put(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                        advance(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                        scanned[0]++;
+                    }
+                }
+            }
+        });
+        filter.flush();
+        persistHighWaterMark();
+        return scanned[0];
+    }
+
+    /**
+     * @return the highest ID scanned or imported so far, null if none
+     */
+    public UUID getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Returns the IDs of the batch that are contained in the table already.
+     * Only IDs the filter might contain are checked against the table.
+     */
+    public UniqueIDSet findDuplicates(final long[] msb, final long[] lsb, final int count) {
+        final UniqueIDSet[] duplicates = new UniqueIDSet[1];
+        doWork(connection -> duplicates[0] = findDuplicates(connection, msb, lsb, count));
+        return duplicates[0];
+    }
+
+    /**
+     * Inserts the IDs of the batch that are neither contained in the table nor
+     * repeated within the batch in a single transaction, e.g. into
+     * {@code uuid.entity_with_uuid}, whose only column is the id. IDs the
+     * filter has missed are skipped by the table on conflict. Once committed,
+     * the IDs are added to the filter and the high-water mark is advanced.
+     *
+     * @return the number of rows inserted
+     */
+    public int importBatch(final long[] msb, final long[] lsb, final int count) throws IOException {
+        checkArgument(count <= msb.length && count <= lsb.length, "count exceeds the arrays");
+        final UniqueIDSet[] duplicates = new UniqueIDSet[1];
+        final int[]         inserted   = new int[1];
+        doWork(connection -> {
+            duplicates[0] = findDuplicates(connection, msb, lsb, count);
+            try (PreparedStatement statement = connection.prepareStatement(String.format("INSERT INTO %s (id) VALUES (?) ON CONFLICT (id) DO NOTHING",
+                                                                                         table))) {
+                final UniqueIDSet batch = new UniqueIDSet(count);
+                for (int i = 0; i < count; i++) {
+                    if (!duplicates[0].contains(msb[i], lsb[i]) && batch.add(msb[i], lsb[i])) {
+                        statement.setObject(1, new UUID(msb[i], lsb[i]));
+                        statement.addBatch();
+                    }
+                }
+                for (final int updated : statement.executeBatch()) {
+                    inserted[0] += Math.max(updated, 0);
+                }
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            filter.put(msb[i], lsb[i]);
+            advance(msb[i], lsb[i]);
+        }
+        // the filter first, so the mark never covers IDs missing from it
+        filter.flush();
+        persistHighWaterMark();
+        return inserted[0];
+    }
+
+    private UniqueIDSet findDuplicates(final Connection connection,
+                                       final long[] msb,
+                                       final long[] lsb,
+                                       final int count) throws SQLException {
+        final UniqueIDSet duplicates = new UniqueIDSet();
+        final UniqueIDSet batch      = new UniqueIDSet(count);
+        final List<UUID>  probable   = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (batch.add(msb[i], lsb[i]) && filter.mightContain(msb[i], lsb[i])) {
+                probable.add(new UUID(msb[i], lsb[i]));
+            }
+        }
+        if (probable.isEmpty()) {
+            return duplicates;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(String.format("SELECT id FROM %s WHERE id = ANY (?)",
+                                                                                     table))) {
+            final Array array = connection.createArrayOf("uuid", probable.toArray());
+            statement.setArray(1, array);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    final UUID id = resultSet.getObject(1, UUID.class);
+                    duplicates.add(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                }
+            } finally {
+                array.free();
+            }
+        }
+        return duplicates;
+    }
+
+    private void advance(final long msb, final long lsb) {
+        if (highWaterMark == null
+            || UUIDRadixSort.compare(msb,
+                                     lsb,
+                                     highWaterMark.getMostSignificantBits(),
+                                     highWaterMark.getLeastSignificantBits()) > 0) {
+            highWaterMark = new UUID(msb, lsb);
+        }
+    }
+
+    private void persistHighWaterMark() throws IOException {
+        if (directory == null || highWaterMark == null) {
+            return;
+        }
+        // written aside and moved, so a crash does not leave a torn mark behind
+        final Path temporary = directory.resolve(HIGH_WATER_MARK_FILE + ".tmp");
+        Files.writeString(temporary, highWaterMark.toString(), StandardCharsets.US_ASCII);
+        Files.move(temporary,
+                   directory.resolve(HIGH_WATER_MARK_FILE),
+                   StandardCopyOption.ATOMIC_MOVE,
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void doWork(final Work work) {
+        EntityTables.doWork(emf, work);
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Table;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+
+/**
+ * Helpers for plain JDBC access to the tables of entities.
+ */
+final class EntityTables {
+
+    private EntityTables() {
+    }
+
+    /**
+     * @return the {@link Table} annotation of the entity
+     */
+    static Table table(final Class<?> entityClass) {
+        final Table table = entityClass.getAnnotation(Table.class);
+        checkArgument(table != null, "%s is not annotated with @Table", entityClass.getName());
+        return table;
+    }
+
+    /**
+     * @return the schema qualified name of the table of an entity annotated
+     *         with {@link Table}
+     */
+    static String qualifiedName(final Class<?> entityClass) {
+        final Table table = table(entityClass);
+        return table.schema()
+                    .isEmpty() ? table.name() : table.schema() + "." + table.name();
+    }
+
+    /**
+     * Runs the work with the JDBC connection of a new entity manager within a
+     * transaction.
+     */
+    static void doWork(final EntityManagerFactory emf, final Work work) {
+        inTransaction(emf, em -> {
+            em.unwrap(Session.class)
+              .doWork(work);
+            return null;
+        });
+    }
+
+    /**
+     * Runs the work with a new entity manager within a transaction.
+     *
+     * @return the result of the work
+     */
+    static <T> T inTransaction(final EntityManagerFactory emf, final Function<EntityManager, T> work) {
+        final EntityManager     em          = emf.createEntityManager();
+        final EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            final T result = work.apply(em);
+            transaction.commit();
+            return result;
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            em.close();
+        }
+    }
+}
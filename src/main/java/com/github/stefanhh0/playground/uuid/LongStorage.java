@@ -0,0 +1,222 @@
+package com.github.stefanhh0.playground.uuid;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed size array of {@code long}s either on the heap, off-heap in direct
+ * buffers or in a memory-mapped file.
+ */
+abstract class LongStorage {
+
+    /** Max length of mapped storage, limited by the int capacity of a buffer. */
+    static final int MAX_DIRECT_LENGTH = Integer.MAX_VALUE / Long.BYTES;
+
+    /** Length of the direct buffers of off-heap storage, 512 MB each. */
+    private static final int DIRECT_PAGE_SHIFT = 26;
+
+    static LongStorage allocate(final int length, final boolean offHeap) {
+        return offHeap ? new Direct(length, DIRECT_PAGE_SHIFT) : new Heap(length);
+    }
+
+    /**
+     * Allocates off-heap storage in direct buffers of {@code 1 << pageShift}
+     * {@code long}s each.
+     */
+    static LongStorage allocateDirect(final int length, final int pageShift) {
+        return new Direct(length, pageShift);
+    }
+
+    /**
+     * Maps the file, which is created or extended to the given length if
+     * necessary. Values are stored little endian, so the file is portable.
+     */
+    static LongStorage map(final Path file, final int length) throws IOException {
+        return new Mapped(file, length);
+    }
+
+    abstract long get(int index);
+
+    abstract void set(int index, long value);
+
+    abstract int length();
+
+    abstract boolean isOffHeap();
+
+    /**
+     * Writes changes of a memory-mapped storage to its file.
+     */
+    void force() {
+    }
+
+    /**
+     * Unmaps a memory-mapped storage right away instead of when it is garbage
+     * collected, so its file can be deleted on every platform. The storage
+     * must not be used afterwards.
+     */
+    void close() {
+    }
+
+    private static final class Heap extends LongStorage {
+
+        private final long[] array;
+
+        Heap(final int length) {
+            array = new long[length];
+        }
+
+        @Override
+        long get(final int index) {
+            return array[index];
+        }
+
+        @Override
+        void set(final int index, final long value) {
+            array[index] = value;
+        }
+
+        @Override
+        int length() {
+            return array.length;
+        }
+
+        @Override
+        boolean isOffHeap() {
+            return false;
+        }
+    }
+
+    /**
+     * Off-heap storage in pages of direct buffers, so its length is not
+     * limited by the int capacity of a single buffer.
+     */
+    private static final class Direct extends LongStorage {
+
+        private final LongBuffer[] pages;
+        private final int          pageShift;
+        private final int          pageMask;
+        private final int          length;
+
+        Direct(final int length, final int pageShift) {
+            this.length    = length;
+            this.pageShift = pageShift;
+            this.pageMask  = (1 << pageShift) - 1;
+            this.pages     = new LongBuffer[(int) (((long) length + pageMask) >>> pageShift)];
+            for (int page = 0; page < pages.length; page++) {
+                final int pageLength = Math.min(1 << pageShift, length - (page << pageShift));
+                pages[page] = ByteBuffer.allocateDirect(pageLength * Long.BYTES)
+                                        .order(ByteOrder.nativeOrder())
+                                        .asLongBuffer();
+            }
+        }
+
+        @Override
+        long get(final int index) {
+            return pages[index >>> pageShift].get(index & pageMask);
+        }
+
+        @Override
+        void set(final int index, final long value) {
+            pages[index >>> pageShift].put(index & pageMask, value);
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+
+        @Override
+        boolean isOffHeap() {
+            return true;
+        }
+    }
+
+    private static final class Mapped extends LongStorage {
+
+        /**
+         * {@code sun.misc.Unsafe.invokeCleaner(ByteBuffer)}, the only way to
+         * unmap a buffer, or null if it is not available.
+         */
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe        = null;
+            Method invokeCleaner = null;
+            try {
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Field    field       = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe        = field.get(null);
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (final ReflectiveOperationException | RuntimeException e) {
+                // left to the garbage collector
+            }
+            UNSAFE         = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        private final MappedByteBuffer mapped;
+        private final LongBuffer       buffer;
+
+        Mapped(final Path file, final int length) throws IOException {
+            try (FileChannel channel = FileChannel.open(file,
+                                                        StandardOpenOption.CREATE,
+                                                        StandardOpenOption.READ,
+                                                        StandardOpenOption.WRITE)) {
+                mapped = channel.map(MapMode.READ_WRITE, 0, (long) length * Long.BYTES);
+            }
+            buffer = mapped.order(ByteOrder.LITTLE_ENDIAN)
+                           .asLongBuffer();
+        }
+
+        @Override
+        long get(final int index) {
+            return buffer.get(index);
+        }
+
+        @Override
+        void set(final int index, final long value) {
+            buffer.put(index, value);
+        }
+
+        @Override
+        int length() {
+            return buffer.capacity();
+        }
+
+        @Override
+        boolean isOffHeap() {
+            return true;
+        }
+
+        @Override
+        void force() {
+            mapped.force();
+        }
+
+        @Override
+        void close() {
+            if (INVOKE_CLEANER == null) {
+                return;
+            }
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, mapped);
+            } catch (final IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (final InvocationTargetException e) {
+                throw new IllegalStateException("Unmapping failed", e.getCause());
+            }
+        }
+    }
+}
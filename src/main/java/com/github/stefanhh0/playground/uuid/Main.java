@@ -2,6 +2,12 @@ package com.github.stefanhh0.playground.uuid;
 
 import static java.lang.System.out;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.Month;
@@ -22,6 +28,7 @@ import org.apache.commons.lang3.time.DurationFormatUtils;
 
 import com.github.f4b6a3.uuid.UuidCreator;
 import com.github.f4b6a3.uuid.util.UuidUtil;
+import com.github.stefanhh0.playground.uuid.TimePartitionManager.Interval;
 
 public class Main {
 
@@ -29,18 +36,39 @@ public class Main {
 
     private static final EntityManager em = emf.createEntityManager();
 
-    public static void main(final String[] args) {
+    public static void main(final String[] args) throws IOException {
+        final NodeIdentity identity = NodeIdentity.acquire(emf,
+                                                           NodeIdentity.DEFAULT_MAX_NODES,
+                                                           NodeIdentity.DEFAULT_TIME_TO_LIVE);
+        TimeOrderedUUIDGeneratorStrategy.useNodeIdentity(identity);
+        out.println("Node ID: " + identity.getNodeId());
+
+        partitionEntitiesWithUUID();
+
         singleUUIDv6Demo();
 
         createSyntheticSequentialUUIDsStartingAtZero();
 
         persist1M_EntitiesWithSequenceID();
         persist1M_EntitiesWithUUIDv6();
+        spool1M_EntitiesWithUUIDv6();
 
+        archiveEntitiesWithUUID();
+
+        TimeOrderedUUIDGeneratorStrategy.useNodeIdentity(null);
+        identity.close();
         em.close();
         emf.close();
     }
 
+    private static void partitionEntitiesWithUUID() {
+        final TimePartitionManager partitions = TimePartitionManager.forEntity(emf,
+                                                                               EntityWithUUID.class,
+                                                                               Interval.MONTH);
+        partitions.createPartitionedTable();
+        out.println("Partitions: " + partitions.createUpcomingPartitions(Instant.now(), 2));
+    }
+
     private static void singleUUIDv6Demo() {
         final EntityTransaction transaction = em.getTransaction();
         transaction.begin();
@@ -140,6 +168,45 @@ public class Main {
         // 560M -> 72M
     }
 
+    private static void spool1M_EntitiesWithUUIDv6() throws IOException {
+        // append 1.000.000 ids to memory-mapped segments, drained in the background.
+        final Instant start = Instant.now();
+        try (UUIDSpool spool = UUIDSpool.open(emf,
+                                              EntityWithUUID.class,
+                                              Path.of("target", "spool"),
+                                              UUIDSpool.DEFAULT_RECORDS_PER_SEGMENT)) {
+            for (int i = 0; i < 1000000; i++) {
+                spool.append(TimeOrderedUUIDGeneratorStrategy.generate());
+            }
+        }
+        final Duration duration  = Duration.between(start, Instant.now());
+        final String   durationS = DurationFormatUtils.formatDuration(duration.toMillis(), "HH:mm:ss.SSS");
+        out.printf("UUID-based, spooled: %s%n", durationS);
+    }
+
+    private static void archiveEntitiesWithUUID() throws IOException {
+        // export all ids, about 1 byte per row instead of 16 in binary.
+        final Path   file = Path.of("target", "entity_with_uuid.uuida");
+        final long[] rows = new long[1];
+        try (UUIDArchive.Writer writer = new UUIDArchive.Writer(Files.newOutputStream(file))) {
+            EntityTables.doWork(emf, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(String.format("SELECT id FROM %s ORDER BY id",
+                                                                                             EntityTables.qualifiedName(EntityWithUUID.class)))) {
+                    statement.setFetchSize(10000);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            writer.write(resultSet.getObject(1, UUID.class));
+                            rows[0]++;
+                        }
+                    }
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        out.printf("Archived %d ids in %d bytes%n", rows[0], Files.size(file));
+    }
+
     private static String toString(final UUID uuid) {
         final Instant gregorianChange             = Instant.parse("1582-10-15T00:00:00.000Z");
         final long    gregorianChangeInMillis     = gregorianChange.toEpochMilli();
@@ -0,0 +1,310 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.github.f4b6a3.uuid.factory.function.TimeFunction;
+import com.github.f4b6a3.uuid.factory.rfc4122.TimeOrderedFactory;
+import com.github.f4b6a3.uuid.util.UuidTime;
+
+/**
+ * Node ID of this JVM, leased from {@code uuid.node_lease}, see
+ * {@link NodeLease}. IDs created by {@link #createFactory()} carry the node ID
+ * in their node field, so IDs of different JVMs cannot collide as long as each
+ * holds a lease.
+ * <p>
+ * The table holds a row per node ID, seeded as expired by the first JVM to
+ * start. An expired node ID is leased at startup and renewed by a heartbeat
+ * every third of the time to live. Expiry is judged by the clock of the
+ * database only. Locally the lease counts as expired one time to live after
+ * the last successful renewal was started, measured with
+ * {@link System#nanoTime()}, i.e. before the database lets another JVM take it
+ * over. Creating IDs fails while the lease is expired.
+ * <p>
+ * Within a lease, timestamps are strictly increasing, even if the wall clock
+ * steps back. Each new owner of a node ID uses the next clock sequence, so
+ * its IDs differ from the IDs of the previous owners regardless of their
+ * clocks, and starts above the last timestamp they have reported.
+ */
+public class NodeIdentity implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_NODES = 1024;
+
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(30);
+
+    /**
+     * Marks the node as not being a MAC address, as recommended by RFC 4122
+     * for random node IDs.
+     */
+    private static final long MULTICAST_BIT = 0x010000000000L;
+
+    private static final int CLOCK_SEQ_RANGE = 1 << 14;
+
+    private final EntityManagerFactory     emf;
+    private final String                   table;
+    private final String                   owner;
+    private final Duration                 timeToLive;
+    private final int                      nodeId;
+    private final int                      clockSeq;
+    private final LeaseTimeFunction        timeFunction;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                                                         final Thread thread = new Thread(runnable, "node-lease-heartbeat");
+                                                         thread.setDaemon(true);
+                                                         return thread;
+                                                     });
+
+    private volatile long             deadline;
+    private volatile String           revoked;
+    private volatile RuntimeException renewalFailure;
+
+    private NodeIdentity(final EntityManagerFactory emf,
+                         final String table,
+                         final String owner,
+                         final Duration timeToLive,
+                         final long[] lease,
+                         final long deadline) {
+        this.emf          = emf;
+        this.table        = table;
+        this.owner        = owner;
+        this.timeToLive   = timeToLive;
+        this.nodeId       = (int) lease[0];
+        this.clockSeq     = (int) lease[1];
+        this.timeFunction = new LeaseTimeFunction(Clock.systemUTC(), lease[2], this::checkValid);
+        this.deadline     = deadline;
+    }
+
+    /**
+     * Leases the lowest expired node ID and starts the heartbeat.
+     *
+     * @param maxNodes   the number of node IDs, at least the number of JVMs
+     *                   creating IDs at the same time
+     * @param timeToLive the time a lease stays valid without renewal
+     * @throws IllegalStateException If all node IDs are leased.
+     */
+    public static NodeIdentity acquire(final EntityManagerFactory emf, final int maxNodes, final Duration timeToLive) {
+        checkNotNull(emf, "emf must not be null");
+        checkArgument(maxNodes > 0 && maxNodes <= 1 << 24, "maxNodes %s is out of range", maxNodes);
+        checkArgument(timeToLive.toMillis() >= 3, "timeToLive must be at least 3 millis");
+        final String table = EntityTables.qualifiedName(NodeLease.class);
+        final String owner = ProcessHandle.current()
+                                          .pid()
+                             + "/" + UUID.randomUUID();
+
+        EntityTables.doWork(emf, connection -> {
+            seed(connection, table, maxNodes);
+        });
+
+        final long   start = System.nanoTime();
+        final long[] lease = { -1, 0, 0 };
+        EntityTables.doWork(emf, connection -> {
+            takeOver(connection, table, owner, maxNodes, timeToLive, lease);
+        });
+        if (lease[0] < 0) {
+            throw new IllegalStateException(String.format("No node ID available, all %d are leased", maxNodes));
+        }
+        final NodeIdentity identity = new NodeIdentity(emf, table, owner, timeToLive, lease, start + timeToLive.toNanos());
+        final long         period   = timeToLive.toMillis() / 3;
+        identity.heartbeat.scheduleAtFixedRate(identity::renew, period, period, TimeUnit.MILLISECONDS);
+        return identity;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return the 48 bit node field of the IDs
+     */
+    public long getNode() {
+        return toNode(nodeId);
+    }
+
+    public int getClockSeq() {
+        return clockSeq;
+    }
+
+    /**
+     * @return true if the lease has neither expired nor been taken over
+     */
+    public boolean isValid() {
+        return revoked == null && System.nanoTime() - deadline < 0;
+    }
+
+    /**
+     * Creates a factory of time-ordered IDs with the node ID. All factories of
+     * the identity share the same strictly increasing timestamps.
+     */
+    public TimeOrderedFactory createFactory() {
+        return TimeOrderedFactory.builder()
+                                 .withTimeFunction(timeFunction)
+                                 .withNodeId(getNode())
+                                 .withClockSeq(clockSeq)
+                                 .build();
+    }
+
+    /**
+     * Stops the heartbeat and releases the lease, so the node ID can be taken
+     * over right away.
+     */
+    @Override
+    public void close() {
+        revoked = "Node identity is closed";
+        heartbeat.shutdown();
+        try {
+            heartbeat.awaitTermination(timeToLive.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+        }
+        EntityTables.doWork(emf, connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(String.format("UPDATE %s SET expires_at = now(), last_timestamp = greatest(last_timestamp, ?) WHERE node_id = ? AND owner = ?",
+                                                                                         table))) {
+                statement.setLong(1, timeFunction.getLastTimestamp());
+                statement.setInt(2, nodeId);
+                statement.setString(3, owner);
+                statement.executeUpdate();
+            }
+        });
+    }
+
+    static long toNode(final int nodeId) {
+        return MULTICAST_BIT | nodeId;
+    }
+
+    private static boolean takeOver(final Connection connection,
+                                    final String table,
+                                    final String owner,
+                                    final int maxNodes,
+                                    final Duration timeToLive,
+                                    final long[] lease) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(String.format("UPDATE %1$s SET owner = ?, expires_at = now() + ? * interval '1 millisecond', clock_seq = (clock_seq + 1) %% %2$d"
+                                                                                     + " WHERE node_id = (SELECT node_id FROM %1$s WHERE node_id < ? AND expires_at < now() ORDER BY node_id LIMIT 1 FOR UPDATE SKIP LOCKED)"
+                                                                                     + " RETURNING node_id, clock_seq, last_timestamp",
+                                                                                     table,
+                                                                                     CLOCK_SEQ_RANGE))) {
+            statement.setString(1, owner);
+            statement.setLong(2, timeToLive.toMillis());
+            statement.setInt(3, maxNodes);
+            return read(statement, lease);
+        }
+    }
+
+    /**
+     * Inserts the missing rows of the node IDs as expired, so concurrent
+     * starters lease them through {@link #takeOver} only, where each skips the
+     * rows locked by the others.
+     */
+    private static void seed(final Connection connection, final String table, final int maxNodes)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(String.format("INSERT INTO %s (node_id, owner, expires_at, clock_seq, last_timestamp)"
+                                                                                     + " SELECT n, '', to_timestamp(0), floor(random() * %d)::int, 0 FROM generate_series(0, ? - 1) n"
+                                                                                     + " ON CONFLICT (node_id) DO NOTHING",
+                                                                                     table,
+                                                                                     CLOCK_SEQ_RANGE))) {
+            statement.setInt(1, maxNodes);
+            statement.executeUpdate();
+        }
+    }
+
+    private static boolean read(final PreparedStatement statement, final long[] lease) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                return false;
+            }
+            lease[0] = resultSet.getInt(1);
+            lease[1] = resultSet.getInt(2);
+            lease[2] = resultSet.getLong(3);
+            return true;
+        }
+    }
+
+    /**
+     * Renews the lease, run by the heartbeat.
+     */
+    void renew() {
+        final long start = System.nanoTime();
+        try {
+            final int[] updated = new int[1];
+            EntityTables.doWork(emf, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(String.format("UPDATE %s SET expires_at = now() + ? * interval '1 millisecond', last_timestamp = greatest(last_timestamp, ?) WHERE node_id = ? AND owner = ?",
+                                                                                             table))) {
+                    statement.setLong(1, timeToLive.toMillis());
+                    statement.setLong(2, timeFunction.getLastTimestamp());
+                    statement.setInt(3, nodeId);
+                    statement.setString(4, owner);
+                    updated[0] = statement.executeUpdate();
+                }
+            });
+            if (updated[0] == 0) {
+                revoked = String.format("Lease of node ID %d has been taken over", nodeId);
+                heartbeat.shutdown();
+            } else {
+                deadline       = start + timeToLive.toNanos();
+                renewalFailure = null;
+            }
+        } catch (final RuntimeException e) {
+            // retried by the next heartbeat, IDs are created until the lease expires
+            renewalFailure = e;
+        }
+    }
+
+    private void checkValid() {
+        final String message = revoked;
+        if (message != null) {
+            throw new IllegalStateException(message);
+        }
+        if (System.nanoTime() - deadline >= 0) {
+            throw new IllegalStateException(String.format("Lease of node ID %d has expired", nodeId), renewalFailure);
+        }
+    }
+
+    /**
+     * Returns strictly increasing unix timestamps in 100 nanos as expected by
+     * uuid-creator, starting above a floor and checking the lease first.
+     */
+    static final class LeaseTimeFunction implements TimeFunction {
+
+        private static final long GREGORIAN_EPOCH = TimeFunction.toUnixTimestamp(UuidTime.EPOCH_GREG);
+
+        private final Clock    clock;
+        private final Runnable check;
+
+        private long lastTimestamp;
+
+        /**
+         * @param floor the gregorian timestamp all timestamps are above
+         */
+        LeaseTimeFunction(final Clock clock, final long floor, final Runnable check) {
+            this.clock         = clock;
+            this.lastTimestamp = floor;
+            this.check         = check;
+        }
+
+        @Override
+        public synchronized long getAsLong() {
+            check.run();
+            lastTimestamp = Math.max(TimeOrderedUUIDUtil.toTimestamp(clock.instant()), lastTimestamp + 1);
+            return lastTimestamp + GREGORIAN_EPOCH;
+        }
+
+        /**
+         * @return the gregorian timestamp returned last
+         */
+        synchronized long getLastTimestamp() {
+            return lastTimestamp;
+        }
+    }
+}
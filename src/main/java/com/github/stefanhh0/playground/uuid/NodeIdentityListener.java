@@ -0,0 +1,44 @@
+package com.github.stefanhh0.playground.uuid;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Leases the {@link NodeIdentity} of a web application before any of its
+ * servlets is initialized, so e.g. the pool of {@link UUIDIssuingServlet} is
+ * only filled with IDs of the leased node ID, and releases it after all
+ * servlets are destroyed. Deployment fails if no node ID is available.
+ */
+@WebListener
+public class NodeIdentityListener implements ServletContextListener {
+
+    private EntityManagerFactory emf;
+    private NodeIdentity         identity;
+
+    @Override
+    public void contextInitialized(final ServletContextEvent event) {
+        emf = Persistence.createEntityManagerFactory("playground");
+        try {
+            identity = NodeIdentity.acquire(emf, NodeIdentity.DEFAULT_MAX_NODES, NodeIdentity.DEFAULT_TIME_TO_LIVE);
+        } catch (final RuntimeException e) {
+            emf.close();
+            throw e;
+        }
+        TimeOrderedUUIDGeneratorStrategy.useNodeIdentity(identity);
+        event.getServletContext()
+             .log(String.format("Leased node ID %d", identity.getNodeId()));
+    }
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent event) {
+        TimeOrderedUUIDGeneratorStrategy.useNodeIdentity(null);
+        try {
+            identity.close();
+        } finally {
+            emf.close();
+        }
+    }
+}
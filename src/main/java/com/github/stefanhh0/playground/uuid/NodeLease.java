@@ -0,0 +1,61 @@
+package com.github.stefanhh0.playground.uuid;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Lease of a node ID, maintained by {@link NodeIdentity}. Rows are never
+ * deleted, so the next owner of a node ID continues with the clock sequence
+ * and timestamp of the previous one.
+ */
+@Entity
+@Table(schema = "uuid", name = "node_lease")
+public class NodeLease {
+
+    @Id
+    @Column(name = "node_id", nullable = false, updatable = false)
+    private Integer nodeId;
+
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false, columnDefinition = "timestamp with time zone")
+    private Instant expiresAt;
+
+    @Column(name = "clock_seq", nullable = false)
+    private Integer clockSeq;
+
+    /**
+     * The highest gregorian timestamp issued by the owners so far, as of
+     * their last heartbeat.
+     */
+    @Column(name = "last_timestamp", nullable = false)
+    private Long lastTimestamp;
+
+    protected NodeLease() {
+    }
+
+    public Integer getNodeId() {
+        return nodeId;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public Integer getClockSeq() {
+        return clockSeq;
+    }
+
+    public Long getLastTimestamp() {
+        return lastTimestamp;
+    }
+}
@@ -6,11 +6,14 @@ import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.id.UUIDGenerationStrategy;
 
 import com.github.f4b6a3.uuid.UuidCreator;
+import com.github.f4b6a3.uuid.factory.rfc4122.TimeOrderedFactory;
 
 public class TimeOrderedUUIDGeneratorStrategy implements UUIDGenerationStrategy {
 
     private static final long serialVersionUID = -510218196922637849L;
 
+    private static volatile TimeOrderedFactory factory;
+
     @Override
     public int getGeneratedVersion() {
         return 6;
@@ -18,6 +21,26 @@ public class TimeOrderedUUIDGeneratorStrategy implements UUIDGenerationStrategy
 
     @Override
     public UUID generateUUID(SharedSessionContractImplementor session) {
-        return UuidCreator.getTimeOrdered();
+        return generate();
+    }
+
+    /**
+     * Generates an ID the same way as for entities, e.g. for IDs issued
+     * outside of hibernate.
+     */
+    public static UUID generate() {
+        final TimeOrderedFactory leased = factory;
+        return leased == null ? UuidCreator.getTimeOrdered() : leased.create();
+    }
+
+    /**
+     * Embeds the leased node ID in all IDs generated from now on, instead of
+     * the random node ID of uuid-creator.
+     *
+     * @param identity the node identity, or null to use the random node ID
+     *                 again
+     */
+    public static void useNodeIdentity(final NodeIdentity identity) {
+        factory = identity == null ? null : identity.createFactory();
     }
 }
@@ -0,0 +1,68 @@
+package com.github.stefanhh0.playground.uuid;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import com.github.f4b6a3.uuid.util.UuidTime;
+
+/**
+ * Bit level helpers for time-ordered (version 6) UUIDs as generated by
+ * {@link TimeOrderedUUIDGeneratorStrategy}.
+ * <p>
+ * The most significant bits hold the 60 bit gregorian timestamp (100 nanos
+ * since 1582-10-15) with the version nibble between its upper 48 and lower 12
+ * bits, hence the natural unsigned order of the UUIDs equals the order of their
+ * timestamps.
+ */
+public final class TimeOrderedUUIDUtil {
+
+    private static final long VERSION_BITS = 0x6000L;
+
+    private TimeOrderedUUIDUtil() {
+    }
+
+    /**
+     * @param mostSignificantBits the most significant bits of a version 6 UUID
+     * @return the gregorian timestamp, same as {@link UniqueID#getTimestamp()}
+     */
+    public static long getTimestamp(final long mostSignificantBits) {
+        return ((mostSignificantBits >>> 16) << 12) | (mostSignificantBits & 0xFFFL);
+    }
+
+    /**
+     * @param timestamp the gregorian timestamp in 100 nanos
+     * @return the most significant bits of a version 6 UUID for the timestamp
+     */
+    public static long toMostSignificantBits(final long timestamp) {
+        return ((timestamp >>> 12) << 16) | VERSION_BITS | (timestamp & 0xFFFL);
+    }
+
+    /**
+     * @param instant the instant to convert
+     * @return the gregorian timestamp in 100 nanos of the instant
+     */
+    public static long toTimestamp(final Instant instant) {
+        return UuidTime.toGregTimestamp(instant);
+    }
+
+    /**
+     * @param timestamp the gregorian timestamp in 100 nanos
+     * @return the instant of the timestamp
+     */
+    public static Instant toInstant(final long timestamp) {
+        return UuidTime.fromGregTimestamp(timestamp);
+    }
+
+    /**
+     * Returns the smallest version 6 UUID for the given instant. All IDs
+     * generated at or after the instant compare greater or equal, all IDs
+     * generated before compare less, which makes it suitable as range bound,
+     * e.g. {@code id >= lowerBound(from) AND id < lowerBound(to)}.
+     *
+     * @param instant the instant
+     * @return the lower bound UUID
+     */
+    public static UUID lowerBound(final Instant instant) {
+        return new UUID(toMostSignificantBits(toTimestamp(instant)), 0L);
+    }
+}
@@ -0,0 +1,333 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Table;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages declarative range partitioning (PostgreSQL >= 11) of a table whose
+ * primary key is a time-ordered UUID. The partition key is the id itself:
+ * version 6 UUIDs sort by their embedded timestamp, so each partition covers
+ * the ID range {@code [lowerBound(start), lowerBound(end))} of its period and
+ * range conditions on the id are pruned by the planner.
+ * <p>
+ * Partitions are named {@code <table>_p<period>}, e.g.
+ * {@code entity_with_uuid_p202610} for monthly partitions. Retention works by
+ * detaching and dropping whole partitions instead of deleting rows.
+ */
+public class TimePartitionManager {
+
+    public enum Interval {
+        DAY(ChronoUnit.DAYS, "yyyyMMdd"),
+        MONTH(ChronoUnit.MONTHS, "yyyyMM"),
+        YEAR(ChronoUnit.YEARS, "yyyy");
+
+        private final ChronoUnit        unit;
+        private final DateTimeFormatter formatter;
+
+        Interval(final ChronoUnit unit, final String pattern) {
+            this.unit      = unit;
+            this.formatter = new DateTimeFormatterBuilder().appendPattern(pattern)
+                                                           .parseDefaulting(ChronoField.MONTH_OF_YEAR, 1)
+                                                           .parseDefaulting(ChronoField.DAY_OF_MONTH, 1)
+                                                           .toFormatter();
+        }
+
+        Instant start(final Instant instant) {
+            ZonedDateTime start = instant.atZone(ZoneOffset.UTC)
+                                         .truncatedTo(ChronoUnit.DAYS);
+            if (unit == ChronoUnit.MONTHS) {
+                start = start.withDayOfMonth(1);
+            } else if (unit == ChronoUnit.YEARS) {
+                start = start.withDayOfYear(1);
+            }
+            return start.toInstant();
+        }
+
+        Instant next(final Instant start) {
+            return start.atZone(ZoneOffset.UTC)
+                        .plus(1, unit)
+                        .toInstant();
+        }
+
+        String format(final Instant start) {
+            return formatter.format(start.atZone(ZoneOffset.UTC));
+        }
+
+        Instant parse(final String suffix) {
+            return LocalDate.parse(suffix, formatter)
+                            .atStartOfDay(ZoneOffset.UTC)
+                            .toInstant();
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimePartitionManager.class);
+
+    private final EntityManagerFactory emf;
+    private final String               schema;
+    private final String               table;
+    private final Interval             interval;
+
+    public TimePartitionManager(final EntityManagerFactory emf,
+                                final String schema,
+                                final String table,
+                                final Interval interval) {
+        this.emf      = checkNotNull(emf, "emf must not be null");
+        this.schema   = checkNotNull(schema, "schema must not be null");
+        this.table    = checkNotNull(table, "table must not be null");
+        this.interval = checkNotNull(interval, "interval must not be null");
+    }
+
+    /**
+     * Creates a manager for the table of an entity annotated with
+     * {@link Table}.
+     */
+    public static TimePartitionManager forEntity(final EntityManagerFactory emf,
+                                                 final Class<?> entityClass,
+                                                 final Interval interval) {
+        final Table tableAnnotation = EntityTables.table(entityClass);
+        return new TimePartitionManager(emf, tableAnnotation.schema(), tableAnnotation.name(), interval);
+    }
+
+    /**
+     * @return the partition name for the period containing the instant
+     */
+    public String getPartitionName(final Instant instant) {
+        return table + "_p" + interval.format(interval.start(instant));
+    }
+
+    /**
+     * Ensures the table exists as partitioned table. A missing table is
+     * created, a regular table (e.g. created by hibernate) is converted: it is
+     * renamed and attached as partition covering everything up to the end of
+     * the current period, or of the period of its newest row if later.
+     * <p>
+     * Before the conversion, a check constraint matching the partition bound is
+     * validated in a separate transaction, which does not block writes. The
+     * attach then skips scanning the table while holding an exclusive lock.
+     */
+    public void createPartitionedTable() {
+        final String relkind = inTransaction(em -> getRelkind(em, table));
+        if ("p".equals(relkind)) {
+            return;
+        }
+        if (relkind == null) {
+            inTransaction(em -> em.createNativeQuery(String.format("CREATE TABLE IF NOT EXISTS %s (id uuid NOT NULL, PRIMARY KEY (id)) PARTITION BY RANGE (id)",
+                                                                   qualified(table)))
+                                  .executeUpdate());
+            return;
+        }
+
+        final Instant start = inTransaction(em -> {
+            // PostgreSQL has no max(uuid), ordering by id uses the primary key
+            final List<?> newestId = em.createNativeQuery(String.format("SELECT CAST(id AS text) FROM %s ORDER BY id DESC LIMIT 1",
+                                                                        qualified(table)))
+                                       .getResultList();
+            final Instant now      = Instant.now();
+            final Instant newest   = newestId.isEmpty() ? now
+                                                        : TimeOrderedUUIDUtil.toInstant(TimeOrderedUUIDUtil.getTimestamp(UUID.fromString((String) newestId.get(0))
+                                                                                                                             .getMostSignificantBits()));
+            final Instant period   = interval.start(newest.isAfter(now) ? newest : now);
+            em.createNativeQuery(String.format("ALTER TABLE %s DROP CONSTRAINT IF EXISTS %s",
+                                               qualified(table),
+                                               boundConstraint()))
+              .executeUpdate();
+            em.createNativeQuery(String.format("ALTER TABLE %s ADD CONSTRAINT %s CHECK (id IS NOT NULL AND id < '%s') NOT VALID",
+                                               qualified(table),
+                                               boundConstraint(),
+                                               TimeOrderedUUIDUtil.lowerBound(interval.next(period))))
+              .executeUpdate();
+            return period;
+        });
+        inTransaction(em -> em.createNativeQuery(String.format("ALTER TABLE %s VALIDATE CONSTRAINT %s",
+                                                               qualified(table),
+                                                               boundConstraint()))
+                              .executeUpdate());
+        inTransaction(em -> {
+            if ("r".equals(getRelkind(em, table))) {
+                convert(em, start);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Creates the partition for the period containing {@code now} and the
+     * given number of following periods, if not existing yet.
+     *
+     * @return the names of all partitions ensured
+     */
+    public List<String> createUpcomingPartitions(final Instant now, final int periodsAhead) {
+        checkArgument(periodsAhead >= 0, "periodsAhead must not be negative");
+        return inTransaction(em -> {
+            final List<String> names = new ArrayList<>();
+            Instant            start = interval.start(now);
+            for (int i = 0; i <= periodsAhead; i++) {
+                final Instant end  = interval.next(start);
+                final String  name = getPartitionName(start);
+                em.createNativeQuery(String.format("CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                                                   qualified(name),
+                                                   qualified(table),
+                                                   TimeOrderedUUIDUtil.lowerBound(start),
+                                                   TimeOrderedUUIDUtil.lowerBound(end)))
+                  .executeUpdate();
+                names.add(name);
+                start = end;
+            }
+            return names;
+        });
+    }
+
+    /**
+     * Detaches all partitions whose period ends at or before the cutoff. The
+     * detached tables are kept, e.g. for archiving.
+     *
+     * @return the names of the detached tables
+     */
+    public List<String> detachPartitionsBefore(final Instant cutoff) {
+        return inTransaction(em -> detach(em, cutoff));
+    }
+
+    /**
+     * Detaches and drops all partitions whose period ends at or before the
+     * cutoff.
+     *
+     * @return the names of the dropped tables
+     */
+    public List<String> dropPartitionsBefore(final Instant cutoff) {
+        return inTransaction(em -> {
+            final List<String> names = detach(em, cutoff);
+            for (final String name : names) {
+                em.createNativeQuery("DROP TABLE " + qualified(name))
+                  .executeUpdate();
+            }
+            return names;
+        });
+    }
+
+    /**
+     * Runs {@link #createUpcomingPartitions(Instant, int)} and
+     * {@link #dropPartitionsBefore(Instant)} immediately and then once per
+     * {@code period}. Failed runs are logged and retried with the next run.
+     */
+    public ScheduledFuture<?> schedule(final ScheduledExecutorService executor,
+                                       final Duration period,
+                                       final int periodsAhead,
+                                       final Duration retention) {
+        return executor.scheduleAtFixedRate(() -> {
+            // a run that throws would cancel all further runs
+            try {
+                final Instant now = Instant.now();
+                createUpcomingPartitions(now, periodsAhead);
+                dropPartitionsBefore(now.minus(retention));
+            } catch (final RuntimeException e) {
+                LOG.error("Maintaining the partitions of {} failed, retrying in {}", qualified(table), period, e);
+            }
+        }, 0, period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void convert(final EntityManager em, final Instant start) {
+        final String partition = getPartitionName(start);
+
+        final Object primaryKey = em.createNativeQuery("SELECT conname FROM pg_constraint WHERE conrelid = CAST(?1 AS regclass) AND contype = 'p'")
+                                    .setParameter(1, qualified(table))
+                                    .getSingleResult();
+        em.createNativeQuery(String.format("ALTER TABLE %s RENAME CONSTRAINT %s TO %s_pkey",
+                                           qualified(table),
+                                           primaryKey,
+                                           partition))
+          .executeUpdate();
+        em.createNativeQuery(String.format("ALTER TABLE %s RENAME TO %s", qualified(table), partition))
+          .executeUpdate();
+        em.createNativeQuery(String.format("CREATE TABLE %s (LIKE %s INCLUDING DEFAULTS, PRIMARY KEY (id)) PARTITION BY RANGE (id)",
+                                           qualified(table),
+                                           qualified(partition)))
+          .executeUpdate();
+        em.createNativeQuery(String.format("ALTER TABLE %s ATTACH PARTITION %s FOR VALUES FROM (MINVALUE) TO ('%s')",
+                                           qualified(table),
+                                           qualified(partition),
+                                           TimeOrderedUUIDUtil.lowerBound(interval.next(start))))
+          .executeUpdate();
+        // implied by the partition bound from now on
+        em.createNativeQuery(String.format("ALTER TABLE %s DROP CONSTRAINT %s", qualified(partition), boundConstraint()))
+          .executeUpdate();
+    }
+
+    private String boundConstraint() {
+        return table + "_partition_bound";
+    }
+
+    private List<String> detach(final EntityManager em, final Instant cutoff) {
+        final List<String> detached = new ArrayList<>();
+        for (final Object name : em.createNativeQuery("SELECT c.relname FROM pg_inherits i "
+                                                      + "JOIN pg_class c ON c.oid = i.inhrelid "
+                                                      + "WHERE i.inhparent = CAST(?1 AS regclass) ORDER BY c.relname")
+                                   .setParameter(1, qualified(table))
+                                   .getResultList()) {
+            final Instant start = parsePeriodStart((String) name);
+            if (start != null && !interval.next(start)
+                                          .isAfter(cutoff)) {
+                em.createNativeQuery(String.format("ALTER TABLE %s DETACH PARTITION %s",
+                                                   qualified(table),
+                                                   qualified((String) name)))
+                  .executeUpdate();
+                detached.add((String) name);
+            }
+        }
+        return detached;
+    }
+
+    private Instant parsePeriodStart(final String name) {
+        final String prefix = table + "_p";
+        if (!name.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return interval.parse(name.substring(prefix.length()));
+        } catch (final DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private String getRelkind(final EntityManager em, final String name) {
+        final List<?> result = em.createNativeQuery("SELECT CAST(c.relkind AS text) FROM pg_class c "
+                                                    + "JOIN pg_namespace n ON n.oid = c.relnamespace "
+                                                    + "WHERE n.nspname = ?1 AND c.relname = ?2")
+                                 .setParameter(1, schema)
+                                 .setParameter(2, name)
+                                 .getResultList();
+        return result.isEmpty() ? null : (String) result.get(0);
+    }
+
+    private String qualified(final String name) {
+        return schema.isEmpty() ? name : schema + "." + name;
+    }
+
+    private <T> T inTransaction(final Function<EntityManager, T> work) {
+        return EntityTables.inTransaction(emf, work);
+    }
+}
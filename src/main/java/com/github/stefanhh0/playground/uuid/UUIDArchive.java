@@ -0,0 +1,476 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Compact columnar format for archiving time-ordered (version 6) IDs, e.g. an
+ * export of {@code uuid.entity_with_uuid}.
+ * <p>
+ * IDs are written in blocks. Each block starts with the number of IDs, the
+ * length of its payload and the minimum and maximum ID in unsigned order, so
+ * readers can skip blocks outside a range without decoding them. The payload
+ * stores three bit-packed columns:
+ * <ul>
+ * <li>timestamp: zig-zag encoded deltas to the previous timestamp, starting at
+ * the first timestamp of the block</li>
+ * <li>clock sequence: the upper 16 bits of the least significant bits, i.e.
+ * variant and clock sequence, as offset to their minimum</li>
+ * <li>node: the lower 48 bits of the least significant bits as index into a
+ * dictionary of the nodes of the block</li>
+ * </ul>
+ * Each column uses the bit width of its largest value, which is 0 for a
+ * constant column. IDs of a single generator thus take about the bits of their
+ * timestamp deltas, about 0.7-1 byte per ID instead of 16.
+ */
+public final class UUIDArchive {
+
+    public static final int DEFAULT_BLOCK_SIZE = 8192;
+
+    private static final long MAGIC = 0x3143524155554955L;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final long VERSION_MASK = 0xF000L;
+    private static final long VERSION_BITS = 0x6000L;
+
+    private static final long NODE_MASK = 0xFFFFFFFFFFFFL;
+
+    private static final int PAYLOAD_HEADER_WORDS = 3;
+
+    private UUIDArchive() {
+    }
+
+    /**
+     * Writes IDs to a stream. Not thread safe.
+     */
+    public static final class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final int              blockSize;
+        private final long[]           msb;
+        private final long[]           lsb;
+        private final long[]           values;
+        private final long[]           nodes;
+        private final UniqueIDLongMap  nodeIndexes;
+        private final long[]           words;
+        private final ByteBuffer       bytes;
+
+        private int count;
+
+        public Writer(final OutputStream out) throws IOException {
+            this(out, DEFAULT_BLOCK_SIZE);
+        }
+
+        /**
+         * @param out       the stream to write to, closed by {@link #close()}
+         * @param blockSize the number of IDs per block
+         */
+        public Writer(final OutputStream out, final int blockSize) throws IOException {
+            checkNotNull(out, "out must not be null");
+            checkArgument(blockSize > 0 && blockSize <= 1 << 20, "blockSize %s is out of range", blockSize);
+            this.out         = new DataOutputStream(new BufferedOutputStream(out));
+            this.blockSize   = blockSize;
+            this.msb         = new long[blockSize];
+            this.lsb         = new long[blockSize];
+            this.values      = new long[blockSize];
+            this.nodes       = new long[blockSize];
+            this.nodeIndexes = new UniqueIDLongMap(blockSize);
+            this.words       = new long[maxPayloadWords(blockSize)];
+            this.bytes       = ByteBuffer.allocate(words.length * Long.BYTES);
+            this.out.writeLong(MAGIC);
+            this.out.writeInt(FORMAT_VERSION);
+            this.out.writeInt(blockSize);
+        }
+
+        /**
+         * @throws IllegalArgumentException If the ID is not a version 6 UUID.
+         */
+        public void write(final long mostSignificantBits, final long leastSignificantBits) throws IOException {
+            checkArgument((mostSignificantBits & VERSION_MASK) == VERSION_BITS,
+                          "%s is not a version 6 UUID",
+                          new UUID(mostSignificantBits, leastSignificantBits));
+            msb[count] = mostSignificantBits;
+            lsb[count] = leastSignificantBits;
+            if (++count == blockSize) {
+                writeBlock();
+            }
+        }
+
+        public void write(final UUID id) throws IOException {
+            write(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        }
+
+        public void write(final long[] mostSignificantBits,
+                          final long[] leastSignificantBits,
+                          final int offset,
+                          final int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                write(mostSignificantBits[i], leastSignificantBits[i]);
+            }
+        }
+
+        /**
+         * Writes the pending IDs as a block and flushes the stream.
+         */
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeBlock();
+            }
+            out.flush();
+        }
+
+        /**
+         * Writes the pending IDs and the end of the archive and closes the
+         * stream.
+         */
+        @Override
+        public void close() throws IOException {
+            try (out) {
+                if (count > 0) {
+                    writeBlock();
+                }
+                out.writeInt(0);
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            int minIndex = 0;
+            int maxIndex = 0;
+            for (int i = 1; i < count; i++) {
+                if (UUIDRadixSort.compare(msb[i], lsb[i], msb[minIndex], lsb[minIndex]) < 0) {
+                    minIndex = i;
+                } else if (UUIDRadixSort.compare(msb[i], lsb[i], msb[maxIndex], lsb[maxIndex]) > 0) {
+                    maxIndex = i;
+                }
+            }
+
+            // timestamp deltas
+            final long firstTimestamp = TimeOrderedUUIDUtil.getTimestamp(msb[0]);
+            long       previous       = firstTimestamp;
+            long       bits           = 0;
+            for (int i = 0; i < count; i++) {
+                final long timestamp = TimeOrderedUUIDUtil.getTimestamp(msb[i]);
+                final long delta     = timestamp - previous;
+                values[i] = (delta << 1) ^ (delta >> 63);
+                bits     |= values[i];
+                previous  = timestamp;
+            }
+            final int timestampWidth = width(bits);
+            int       length         = pack(values, count, timestampWidth, words, PAYLOAD_HEADER_WORDS);
+
+            // clock sequences
+            long clockSequenceMin = 0xFFFFL;
+            for (int i = 0; i < count; i++) {
+                clockSequenceMin = Math.min(clockSequenceMin, lsb[i] >>> 48);
+            }
+            bits = 0;
+            for (int i = 0; i < count; i++) {
+                values[i] = (lsb[i] >>> 48) - clockSequenceMin;
+                bits     |= values[i];
+            }
+            final int clockSequenceWidth = width(bits);
+            length = pack(values, count, clockSequenceWidth, words, length);
+
+            // node dictionary
+            int dictionarySize = 0;
+            nodeIndexes.clear();
+            for (int i = 0; i < count; i++) {
+                final long node  = lsb[i] & NODE_MASK;
+                long       index = nodeIndexes.getOrDefault(0L, node, -1L);
+                if (index < 0) {
+                    index = dictionarySize;
+                    nodeIndexes.put(0L, node, index);
+                    nodes[dictionarySize++] = node;
+                }
+                values[i] = index;
+            }
+            final int nodeWidth = width(dictionarySize - 1);
+            System.arraycopy(nodes, 0, words, length, dictionarySize);
+            length = pack(values, count, nodeWidth, words, length + dictionarySize);
+
+            words[0] = firstTimestamp;
+            words[1] = timestampWidth | clockSequenceWidth << 8 | nodeWidth << 16 | clockSequenceMin << 32;
+            words[2] = dictionarySize;
+
+            out.writeInt(count);
+            out.writeInt(length);
+            out.writeLong(msb[minIndex]);
+            out.writeLong(lsb[minIndex]);
+            out.writeLong(msb[maxIndex]);
+            out.writeLong(lsb[maxIndex]);
+            bytes.clear();
+            bytes.asLongBuffer()
+                 .put(words, 0, length);
+            out.write(bytes.array(), 0, length * Long.BYTES);
+            count = 0;
+        }
+    }
+
+    /**
+     * Reads the IDs of a stream block by block. Not thread safe.
+     */
+    public static final class Reader implements Closeable {
+
+        private final DataInputStream in;
+        private final int             blockSize;
+        private final long[]          indexes;
+        private final long[]          words;
+        private final ByteBuffer      bytes;
+
+        private int     count;
+        private int     length;
+        private boolean pending;
+        private boolean ended;
+        private long    minMsb;
+        private long    minLsb;
+        private long    maxMsb;
+        private long    maxLsb;
+
+        /**
+         * @param in the stream to read from, closed by {@link #close()}
+         */
+        public Reader(final InputStream in) throws IOException {
+            checkNotNull(in, "in must not be null");
+            this.in = new DataInputStream(new BufferedInputStream(in));
+            if (this.in.readLong() != MAGIC) {
+                throw new IOException("Not an UUID archive");
+            }
+            final int formatVersion = this.in.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported UUID archive version " + formatVersion);
+            }
+            this.blockSize = this.in.readInt();
+            if (blockSize <= 0 || blockSize > 1 << 20) {
+                throw new IOException("Invalid block size " + blockSize);
+            }
+            this.indexes = new long[blockSize];
+            this.words   = new long[maxPayloadWords(blockSize)];
+            this.bytes   = ByteBuffer.allocate(words.length * Long.BYTES);
+        }
+
+        /**
+         * @return the maximum number of IDs per block, i.e. the capacity the
+         *         arrays passed to {@link #decode(long[], long[], int)} need
+         */
+        public int getBlockSize() {
+            return blockSize;
+        }
+
+        /**
+         * Moves to the next block, skipping the current one if it has not been
+         * decoded.
+         *
+         * @return false at the end of the archive
+         */
+        public boolean next() throws IOException {
+            if (ended) {
+                return false;
+            }
+            if (pending) {
+                in.skipNBytes((long) length * Long.BYTES);
+            }
+            count = in.readInt();
+            if (count == 0) {
+                pending = false;
+                ended   = true;
+                return false;
+            }
+            length = in.readInt();
+            if (count < 0 || count > blockSize || length < PAYLOAD_HEADER_WORDS || length >= words.length) {
+                throw new IOException("Corrupt UUID archive block");
+            }
+            minMsb  = in.readLong();
+            minLsb  = in.readLong();
+            maxMsb  = in.readLong();
+            maxLsb  = in.readLong();
+            pending = true;
+            return true;
+        }
+
+        /**
+         * @return the number of IDs of the current block
+         */
+        public int getCount() {
+            checkState(pending, "no current block");
+            return count;
+        }
+
+        /**
+         * @return the smallest ID of the current block in unsigned order
+         */
+        public UUID getMin() {
+            checkState(pending, "no current block");
+            return new UUID(minMsb, minLsb);
+        }
+
+        /**
+         * @return the largest ID of the current block in unsigned order
+         */
+        public UUID getMax() {
+            checkState(pending, "no current block");
+            return new UUID(maxMsb, maxLsb);
+        }
+
+        /**
+         * Decodes the IDs of the current block in the order they were written.
+         *
+         * @return the number of IDs decoded
+         */
+        public int decode(final long[] mostSignificantBits, final long[] leastSignificantBits, final int offset)
+                throws IOException {
+            checkState(pending, "no current block");
+            checkArgument(offset >= 0
+                          && offset + count <= mostSignificantBits.length
+                          && offset + count <= leastSignificantBits.length,
+                          "arrays are too small");
+            in.readFully(bytes.array(), 0, length * Long.BYTES);
+            bytes.clear();
+            bytes.asLongBuffer()
+                 .get(words, 0, length);
+            pending = false;
+
+            final long firstTimestamp     = words[0];
+            final int  timestampWidth     = (int) words[1] & 0xFF;
+            final int  clockSequenceWidth = (int) (words[1] >>> 8) & 0xFF;
+            final int  nodeWidth          = (int) (words[1] >>> 16) & 0xFF;
+            final long clockSequenceMin   = words[1] >>> 32;
+            final int  dictionarySize     = (int) words[2];
+
+            final int clockSequences = PAYLOAD_HEADER_WORDS + packedLength(count, timestampWidth);
+            final int dictionary     = clockSequences + packedLength(count, clockSequenceWidth);
+            final int nodes          = dictionary + dictionarySize;
+            if (timestampWidth > 64
+                || clockSequenceWidth > 16
+                || nodeWidth > 32
+                || dictionarySize < 1
+                || dictionarySize > count
+                || nodes + packedLength(count, nodeWidth) != length) {
+                throw new IOException("Corrupt UUID archive block");
+            }
+
+            unpackTimestamps(words, timestampWidth, firstTimestamp, mostSignificantBits, offset, count);
+            if (clockSequenceWidth == 0 && nodeWidth == 0) {
+                Arrays.fill(leastSignificantBits, offset, offset + count, clockSequenceMin << 48 | words[dictionary]);
+            } else {
+                unpack(words, clockSequences, clockSequenceWidth, leastSignificantBits, offset, count);
+                unpack(words, nodes, nodeWidth, indexes, 0, count);
+                for (int i = 0; i < count; i++) {
+                    leastSignificantBits[offset + i] = (clockSequenceMin + leastSignificantBits[offset + i]) << 48
+                                                       | words[dictionary + (int) indexes[i]];
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /**
+         * Same as {@link UUIDArchive#unpack(long[], int, int, long[], int, int)}
+         * followed by summing up the timestamp deltas, in a single pass.
+         */
+        private static void unpackTimestamps(final long[] words,
+                                             final int width,
+                                             final long firstTimestamp,
+                                             final long[] mostSignificantBits,
+                                             final int offset,
+                                             final int count) {
+            if (width == 0) {
+                Arrays.fill(mostSignificantBits,
+                            offset,
+                            offset + count,
+                            TimeOrderedUUIDUtil.toMostSignificantBits(firstTimestamp));
+                return;
+            }
+            final long mask      = width == 64 ? -1L : (1L << width) - 1;
+            long       timestamp = firstTimestamp;
+            long       bit       = 0;
+            for (int i = offset; i < offset + count; i++, bit += width) {
+                final int  index = PAYLOAD_HEADER_WORDS + (int) (bit >>> 6);
+                final int  shift = (int) bit & 63;
+                final long delta = (words[index] >>> shift | words[index + 1] << 1 << (63 - shift)) & mask;
+                timestamp              += (delta >>> 1) ^ -(delta & 1);
+                mostSignificantBits[i]  = TimeOrderedUUIDUtil.toMostSignificantBits(timestamp);
+            }
+        }
+    }
+
+    private static int packedLength(final int count, final int width) {
+        return (int) (((long) count * width + 63) >>> 6);
+    }
+
+    private static int width(final long bits) {
+        return 64 - Long.numberOfLeadingZeros(bits);
+    }
+
+    /**
+     * Packs the lower {@code width} bits of the values into the words,
+     * starting at the given word.
+     *
+     * @return the index of the word after the packed values
+     */
+    static int pack(final long[] values, final int count, final int width, final long[] words, final int offset) {
+        final int length = packedLength(count, width);
+        Arrays.fill(words, offset, offset + length, 0L);
+        long bit = 0;
+        for (int i = 0; i < count && width > 0; i++, bit += width) {
+            final int index = offset + (int) (bit >>> 6);
+            final int shift = (int) bit & 63;
+            words[index] |= values[i] << shift;
+            if (shift + width > 64) {
+                words[index + 1] |= values[i] >>> (64 - shift);
+            }
+        }
+        return offset + length;
+    }
+
+    /**
+     * Reverse of {@link #pack(long[], int, int, long[], int)}. The words must
+     * have an element after the packed values.
+     *
+     * @return the index of the word after the packed values
+     */
+    static int unpack(final long[] words,
+                      final int offset,
+                      final int width,
+                      final long[] values,
+                      final int valuesOffset,
+                      final int count) {
+        if (width == 0) {
+            Arrays.fill(values, valuesOffset, valuesOffset + count, 0L);
+            return offset;
+        }
+        final long mask = width == 64 ? -1L : (1L << width) - 1;
+        long       bit  = 0;
+        for (int i = valuesOffset; i < valuesOffset + count; i++, bit += width) {
+            final int index = offset + (int) (bit >>> 6);
+            final int shift = (int) bit & 63;
+            // branch free, relies on a spare word after the packed values,
+            // the second shift is split as shifting by 64 is a no-op
+            values[i] = (words[index] >>> shift | words[index + 1] << 1 << (63 - shift)) & mask;
+        }
+        return offset + packedLength(count, width);
+    }
+
+    private static int maxPayloadWords(final int blockSize) {
+        // header, 64 bit timestamp deltas, 16 bit clock sequences, dictionary
+        // and 32 bit node indexes at most, plus the spare word for unpack
+        return PAYLOAD_HEADER_WORDS + blockSize + (blockSize + 3) / 4 + blockSize + (blockSize + 1) / 2 + 1;
+    }
+}
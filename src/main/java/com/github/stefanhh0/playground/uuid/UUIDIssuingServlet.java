@@ -0,0 +1,206 @@
+package com.github.stefanhh0.playground.uuid;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Issues time-ordered IDs from the same generator as
+ * {@link TimeOrderedUUIDGeneratorStrategy} in batches, e.g.
+ * {@code GET /ids?count=10000&format=binary}.
+ * <ul>
+ * <li>{@code binary} (default): 16 bytes per ID, most significant byte
+ * first</li>
+ * <li>{@code text}: 32 lower case hex digits and a line feed per ID</li>
+ * </ul>
+ * The response is written with non-blocking I/O of an async request from a
+ * {@link UUIDPool}, the IDs are encoded directly into a byte buffer per
+ * request. No container thread waits for the pool: if it is exhausted, the
+ * write is resumed once it has been refilled. Issued IDs are at most a second
+ * old. If the pool cannot issue IDs, e.g. while the lease of the node ID has
+ * expired, the request fails with {@code 503 Service Unavailable}, or is
+ * aborted if the response has been committed already.
+ */
+@WebServlet(urlPatterns = "/ids", asyncSupported = true)
+public class UUIDIssuingServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 2950433837386371815L;
+
+    static final int MAX_COUNT = 1000000;
+
+    private static final int CHUNK_SIZE = 16384;
+    private static final int CHUNKS     = 16;
+
+    /** Bounds how far the timestamps of issued IDs lag behind the clock. */
+    private static final Duration MAX_AGE = Duration.ofSeconds(1);
+
+    private static final int WRITE_BATCH = 512;
+
+    private static final int BINARY_LENGTH = 16;
+    private static final int TEXT_LENGTH   = 33;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final transient Supplier<UUID> generator;
+
+    private transient UUIDPool pool;
+
+    public UUIDIssuingServlet() {
+        this(TimeOrderedUUIDGeneratorStrategy::generate);
+    }
+
+    UUIDIssuingServlet(final Supplier<UUID> generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * Starts filling the pool, after {@link NodeIdentityListener} has leased
+     * the node ID, as listeners are initialized before servlets.
+     */
+    @Override
+    public void init() {
+        pool = new UUIDPool(CHUNK_SIZE, CHUNKS, MAX_AGE, generator);
+    }
+
+    @Override
+    public void destroy() {
+        pool.close();
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        final int count;
+        try {
+            final String countParameter = request.getParameter("count");
+            count = countParameter == null ? 1 : Integer.parseInt(countParameter);
+        } catch (final NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "count must be a number");
+            return;
+        }
+        if (count < 1 || count > MAX_COUNT) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "count must be between 1 and " + MAX_COUNT);
+            return;
+        }
+        final String  format = request.getParameter("format");
+        final boolean binary = format == null || "binary".equals(format);
+        if (!binary && !"text".equals(format)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "format must be binary or text");
+            return;
+        }
+
+        response.setContentType(binary ? "application/octet-stream" : "text/plain;charset=US-ASCII");
+        response.setContentLengthLong((long) count * (binary ? BINARY_LENGTH : TEXT_LENGTH));
+        final AsyncContext        async  = request.startAsync();
+        final ServletOutputStream output = response.getOutputStream();
+        output.setWriteListener(new IDWriter(async, response, output, count, binary));
+    }
+
+    private final class IDWriter implements WriteListener {
+
+        private final AsyncContext        async;
+        private final HttpServletResponse response;
+        private final ServletOutputStream output;
+        private final boolean             binary;
+        private final long[]              ids = new long[WRITE_BATCH << 1];
+        private final byte[]              bytes;
+
+        private int remaining;
+
+        IDWriter(final AsyncContext async,
+                 final HttpServletResponse response,
+                 final ServletOutputStream output,
+                 final int count,
+                 final boolean binary) {
+            this.async     = async;
+            this.response  = response;
+            this.output    = output;
+            this.binary    = binary;
+            this.bytes     = new byte[WRITE_BATCH * (binary ? BINARY_LENGTH : TEXT_LENGTH)];
+            this.remaining = count;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            while (output.isReady()) {
+                if (remaining == 0) {
+                    async.complete();
+                    return;
+                }
+                final int batch;
+                try {
+                    batch = pool.take(ids, 0, Math.min(WRITE_BATCH, remaining));
+                } catch (final IllegalStateException e) {
+                    unavailable(e);
+                    return;
+                }
+                if (batch == 0) {
+                    // the output is still ready, so the container does not call back
+                    pool.whenAvailable(this::resume);
+                    return;
+                }
+                int length = 0;
+                for (int i = 0; i < batch << 1; i += 2) {
+                    length = binary ? writeBinary(ids[i], ids[i + 1], length) : writeText(ids[i], ids[i + 1], length);
+                }
+                remaining -= batch;
+                output.write(bytes, 0, length);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            async.complete();
+        }
+
+        private void resume() {
+            async.start(() -> {
+                try {
+                    onWritePossible();
+                } catch (final IOException e) {
+                    onError(e);
+                }
+            });
+        }
+
+        private void unavailable(final IllegalStateException e) {
+            log("Issuing IDs failed", e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            }
+            // a committed response falls short of its content length instead
+            async.complete();
+        }
+
+        private int writeBinary(final long msb, final long lsb, int offset) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[offset++] = (byte) (msb >>> shift);
+            }
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[offset++] = (byte) (lsb >>> shift);
+            }
+            return offset;
+        }
+
+        private int writeText(final long msb, final long lsb, int offset) {
+            for (int shift = 60; shift >= 0; shift -= 4) {
+                bytes[offset++] = HEX[(int) (msb >>> shift) & 0xF];
+            }
+            for (int shift = 60; shift >= 0; shift -= 4) {
+                bytes[offset++] = HEX[(int) (lsb >>> shift) & 0xF];
+            }
+            bytes[offset++] = '\n';
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Streaming k-way merge of sources that are already sorted in unsigned UUID
+ * order (see {@link UUIDRadixSort}), e.g. the exports of several nodes. The
+ * sources are kept in a binary min-heap ordered by their current ID, which
+ * is passed on as two {@code long}s, so merging does not allocate per ID.
+ * Equal IDs within or across sources are emitted only once.
+ */
+public final class UUIDMerger {
+
+    /**
+     * A sorted source of IDs. {@link #next()} advances to the next ID, which
+     * then is available via {@link #msb()} and {@link #lsb()}.
+     */
+    public interface Source {
+
+        boolean next();
+
+        long msb();
+
+        long lsb();
+
+        static Source of(final long[] msb, final long[] lsb) {
+            return of(msb, lsb, 0, msb.length);
+        }
+
+        static Source of(final long[] msb, final long[] lsb, final int from, final int to) {
+            checkArgument(msb.length == lsb.length, "msb and lsb must have the same length");
+            return new Source() {
+
+                private int index = from - 1;
+
+                @Override
+                public boolean next() {
+                    return ++index < to;
+                }
+
+                @Override
+                public long msb() {
+                    return msb[index];
+                }
+
+                @Override
+                public long lsb() {
+                    return lsb[index];
+                }
+            };
+        }
+    }
+
+    @FunctionalInterface
+    public interface Sink {
+
+        void accept(long msb, long lsb);
+    }
+
+    private UUIDMerger() {
+    }
+
+    /**
+     * Merges the sources into the sink, dropping duplicates.
+     *
+     * @return the number of IDs passed to the sink
+     * @throws IllegalStateException If a source is not sorted.
+     */
+    public static long merge(final List<? extends Source> sources, final Sink sink) {
+        checkNotNull(sources, "sources must not be null");
+        checkNotNull(sink, "sink must not be null");
+
+        final Source[] heap = new Source[sources.size()];
+        int            size = 0;
+        for (final Source source : sources) {
+            if (source.next()) {
+                heap[size] = source;
+                siftUp(heap, size++);
+            }
+        }
+
+        long    count   = 0;
+        long    lastMsb = 0;
+        long    lastLsb = 0;
+        boolean hasLast = false;
+        while (size > 0) {
+            final Source top = heap[0];
+            final long   msb = top.msb();
+            final long   lsb = top.lsb();
+            if (!hasLast || msb != lastMsb || lsb != lastLsb) {
+                if (hasLast && UUIDRadixSort.compare(lastMsb, lastLsb, msb, lsb) > 0) {
+                    throw new IllegalStateException(String.format("Source is not sorted: %s after %s",
+                                                                  new UUID(msb, lsb),
+                                                                  new UUID(lastMsb, lastLsb)));
+                }
+                sink.accept(msb, lsb);
+                count++;
+                lastMsb = msb;
+                lastLsb = lsb;
+                hasLast = true;
+            }
+            if (!top.next()) {
+                heap[0]    = heap[--size];
+                heap[size] = null;
+            }
+            siftDown(heap, 0, size);
+        }
+        return count;
+    }
+
+    private static void siftUp(final Source[] heap, int index) {
+        final Source source = heap[index];
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (compare(heap[parent], source) <= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index       = parent;
+        }
+        heap[index] = source;
+    }
+
+    private static void siftDown(final Source[] heap, int index, final int size) {
+        if (size == 0) {
+            return;
+        }
+        final Source source = heap[index];
+        int          child;
+        while ((child = (index << 1) + 1) < size) {
+            if (child + 1 < size && compare(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (compare(source, heap[child]) <= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index       = child;
+        }
+        heap[index] = source;
+    }
+
+    private static int compare(final Source a, final Source b) {
+        return UUIDRadixSort.compare(a.msb(), a.lsb(), b.msb(), b.lsb());
+    }
+}
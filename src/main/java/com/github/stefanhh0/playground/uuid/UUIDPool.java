@@ -0,0 +1,206 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of pre-generated IDs. A background thread fills chunks of IDs, stored
+ * as interleaved {@code msb, lsb} pairs, which are handed out in order and
+ * recycled once used up. Issuing IDs does not allocate and never waits: if
+ * all filled chunks are used up, {@link #take(long[], int, int)} returns what
+ * is available and {@link #whenAvailable(Runnable)} tells when to continue.
+ * <p>
+ * Chunks older than the max age are discarded and filled again instead of
+ * being handed out, so the timestamps of issued IDs lag behind the clock by
+ * the max age at most, also after idle periods.
+ * <p>
+ * If the generator fails, e.g. because the lease of the node ID has expired,
+ * the refill is retried until it succeeds, and taking IDs fails with the
+ * failure as cause once the filled chunks are used up.
+ */
+public class UUIDPool implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UUIDPool.class);
+
+    private static final long RETRY_DELAY_MILLIS = 100;
+
+    private final BlockingQueue<Chunk> ready;
+    private final BlockingQueue<Chunk> free;
+    private final Queue<Runnable>      waiters = new ConcurrentLinkedQueue<>();
+    private final long                 maxAgeNanos;
+    private final Supplier<UUID>       generator;
+    private final Thread               refiller;
+
+    private Chunk current;
+    private int   position;
+
+    private volatile boolean          closed;
+    private volatile RuntimeException failure;
+
+    /**
+     * @param chunkSize the number of IDs per chunk
+     * @param chunks    the number of chunks, all but the one in use are kept
+     *                  filled
+     * @param maxAge    the age of a chunk, since it started to be filled, after
+     *                  which it is discarded
+     * @param generator the generator of the IDs
+     */
+    public UUIDPool(final int chunkSize, final int chunks, final Duration maxAge, final Supplier<UUID> generator) {
+        checkArgument(chunkSize > 0, "chunkSize must be positive");
+        checkArgument(chunks > 1, "chunks must be at least 2");
+        this.generator   = checkNotNull(generator, "generator must not be null");
+        this.maxAgeNanos = maxAge.toNanos();
+        this.ready       = new ArrayBlockingQueue<>(chunks);
+        this.free        = new ArrayBlockingQueue<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            free.add(new Chunk(chunkSize));
+        }
+        this.refiller = new Thread(this::refill, "uuid-pool-refiller");
+        refiller.setDaemon(true);
+        refiller.start();
+    }
+
+    /**
+     * Copies up to {@code count} of the next IDs as interleaved
+     * {@code msb, lsb} pairs into the target without waiting.
+     *
+     * @return the number of IDs copied, less than {@code count} if the pool is
+     *         exhausted
+     * @throws IllegalStateException If the pool is exhausted and the generator
+     *                               has failed.
+     */
+    public synchronized int take(final long[] target, final int offset, final int count) {
+        checkArgument(offset >= 0 && count >= 0 && offset + ((long) count << 1) <= target.length,
+                      "target is too small");
+        int taken = 0;
+        while (taken < count) {
+            checkState(!closed, "pool is closed");
+            if (current == null || position == current.ids.length || isStale(current)) {
+                if (current != null) {
+                    free.add(current);
+                    current = null;
+                }
+                current = nextFresh();
+                if (current == null) {
+                    break;
+                }
+                position = 0;
+            }
+            final int length = Math.min((count - taken) << 1, current.ids.length - position);
+            System.arraycopy(current.ids, position, target, offset + (taken << 1), length);
+            position += length;
+            taken    += length >>> 1;
+        }
+        final RuntimeException cause = failure;
+        if (taken == 0 && count > 0 && cause != null) {
+            throw new IllegalStateException("Generating IDs failed", cause);
+        }
+        return taken;
+    }
+
+    /**
+     * Runs the callback once, as soon as filled chunks are available, the
+     * generator has failed or the pool is closed, right away if that is the
+     * case already. The callback may run on the refill thread, so it must
+     * not block.
+     */
+    public void whenAvailable(final Runnable callback) {
+        waiters.add(callback);
+        if (!ready.isEmpty() || failure != null || closed) {
+            notifyWaiters();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        refiller.interrupt();
+        notifyWaiters();
+    }
+
+    private boolean isStale(final Chunk chunk) {
+        return System.nanoTime() - chunk.filledAt > maxAgeNanos;
+    }
+
+    /**
+     * @return the next ready chunk that is not stale, null if there is none;
+     *         stale chunks are handed to the refill
+     */
+    private Chunk nextFresh() {
+        Chunk chunk;
+        while ((chunk = ready.poll()) != null) {
+            if (!isStale(chunk)) {
+                return chunk;
+            }
+            free.add(chunk);
+        }
+        return null;
+    }
+
+    private void notifyWaiters() {
+        Runnable waiter;
+        while ((waiter = waiters.poll()) != null) {
+            try {
+                waiter.run();
+            } catch (final RuntimeException e) {
+                LOG.warn("Notifying a waiter of the ID pool failed", e);
+            }
+        }
+    }
+
+    private void refill() {
+        try {
+            Chunk chunk = null;
+            while (!closed) {
+                if (chunk == null) {
+                    chunk = free.take();
+                }
+                final long start = System.nanoTime();
+                try {
+                    final long[] ids = chunk.ids;
+                    for (int i = 0; i < ids.length; i += 2) {
+                        final UUID id = generator.get();
+                        ids[i]     = id.getMostSignificantBits();
+                        ids[i + 1] = id.getLeastSignificantBits();
+                    }
+                } catch (final RuntimeException e) {
+                    failure = e;
+                    notifyWaiters();
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                    continue;
+                }
+                chunk.filledAt = start;
+                failure        = null;
+                ready.put(chunk);
+                chunk = null;
+                notifyWaiters();
+            }
+        } catch (final InterruptedException e) {
+            // closed
+        }
+    }
+
+    private static final class Chunk {
+
+        private final long[] ids;
+
+        /** The {@link System#nanoTime()} the chunk started to be filled at. */
+        private long filledAt;
+
+        Chunk(final int size) {
+            ids = new long[size << 1];
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts 128 bit IDs held in parallel {@code long[] msb / long[] lsb} arrays in
+ * unsigned UUID order, which is the order PostgreSQL uses for {@code uuid}
+ * columns and, for version 6 IDs, the order of their timestamps.
+ * <p>
+ * The sort is a LSD radix sort over the 16 bytes of the ID. The histograms of
+ * all bytes are computed in a single pass up front, so passes over bytes that
+ * are the same for all IDs (e.g. the high timestamp bits and the version of
+ * time-ordered IDs) are skipped.
+ */
+public final class UUIDRadixSort {
+
+    private static final int INSERTION_SORT_THRESHOLD = 64;
+
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private UUIDRadixSort() {
+    }
+
+    /**
+     * Compares two IDs given by their bits unsigned, consistent with
+     * {@link UniqueID#compareTo(UniqueID)}.
+     */
+    public static int compare(final long msb1, final long lsb1, final long msb2, final long lsb2) {
+        final int result = Long.compareUnsigned(msb1, msb2);
+        return result != 0 ? result : Long.compareUnsigned(lsb1, lsb2);
+    }
+
+    public static void sort(final long[] msb, final long[] lsb) {
+        checkArgument(msb.length == lsb.length, "msb and lsb must have the same length");
+        sort(msb, lsb, 0, msb.length, new long[msb.length], new long[lsb.length]);
+    }
+
+    /**
+     * Sorts chunks of the arrays in parallel with {@link #sort(long[], long[])}
+     * in the common {@link ForkJoinPool} and merges them.
+     */
+    public static void parallelSort(final long[] msb, final long[] lsb) {
+        parallelSort(msb, lsb, ForkJoinPool.commonPool());
+    }
+
+    static void parallelSort(final long[] msb, final long[] lsb, final ForkJoinPool pool) {
+        checkArgument(msb.length == lsb.length, "msb and lsb must have the same length");
+        if (msb.length <= PARALLEL_THRESHOLD || pool.getParallelism() == 1) {
+            sort(msb, lsb);
+            return;
+        }
+        pool.invoke(new SortTask(msb, lsb, 0, msb.length, new long[msb.length], new long[lsb.length]));
+    }
+
+    static boolean isSorted(final long[] msb, final long[] lsb, final int from, final int to) {
+        for (int i = from + 1; i < to; i++) {
+            if (compare(msb[i - 1], lsb[i - 1], msb[i], lsb[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void sort(final long[] msb,
+                             final long[] lsb,
+                             final int from,
+                             final int to,
+                             final long[] msbBuffer,
+                             final long[] lsbBuffer) {
+        final int length = to - from;
+        if (length < INSERTION_SORT_THRESHOLD) {
+            insertionSort(msb, lsb, from, to);
+            return;
+        }
+
+        // counts[0..7] are the bytes of lsb, counts[8..15] the bytes of msb,
+        // each from least to most significant
+        final int[][] counts = new int[16][256];
+        for (int i = from; i < to; i++) {
+            final long m = msb[i];
+            final long l = lsb[i];
+            for (int b = 0; b < 8; b++) {
+                counts[b][(int) (l >>> (b << 3)) & 0xFF]++;
+                counts[b + 8][(int) (m >>> (b << 3)) & 0xFF]++;
+            }
+        }
+
+        long[] msbSource = msb;
+        long[] lsbSource = lsb;
+        long[] msbTarget = msbBuffer;
+        long[] lsbTarget = lsbBuffer;
+        for (int pass = 0; pass < 16; pass++) {
+            final int[] count = counts[pass];
+            final int   shift = (pass & 7) << 3;
+            final long  first = pass < 8 ? lsbSource[from] : msbSource[from];
+            if (count[(int) (first >>> shift) & 0xFF] == length) {
+                continue;
+            }
+
+            int offset = from;
+            for (int digit = 0; digit < 256; digit++) {
+                final int c = count[digit];
+                count[digit] = offset;
+                offset      += c;
+            }
+
+            final long[] keys = pass < 8 ? lsbSource : msbSource;
+            for (int i = from; i < to; i++) {
+                final int target = count[(int) (keys[i] >>> shift) & 0xFF]++;
+                msbTarget[target] = msbSource[i];
+                lsbTarget[target] = lsbSource[i];
+            }
+
+            final long[] msbSwap = msbSource;
+            final long[] lsbSwap = lsbSource;
+            msbSource = msbTarget;
+            lsbSource = lsbTarget;
+            msbTarget = msbSwap;
+            lsbTarget = lsbSwap;
+        }
+
+        if (msbSource != msb) {
+            System.arraycopy(msbSource, from, msb, from, length);
+            System.arraycopy(lsbSource, from, lsb, from, length);
+        }
+    }
+
+    private static void insertionSort(final long[] msb, final long[] lsb, final int from, final int to) {
+        for (int i = from + 1; i < to; i++) {
+            final long m = msb[i];
+            final long l = lsb[i];
+            int        j = i - 1;
+            while (j >= from && compare(msb[j], lsb[j], m, l) > 0) {
+                msb[j + 1] = msb[j];
+                lsb[j + 1] = lsb[j];
+                j--;
+            }
+            msb[j + 1] = m;
+            lsb[j + 1] = l;
+        }
+    }
+
+    private static void merge(final long[] msb,
+                              final long[] lsb,
+                              final int from,
+                              final int mid,
+                              final int to,
+                              final long[] msbBuffer,
+                              final long[] lsbBuffer) {
+        if (compare(msb[mid - 1], lsb[mid - 1], msb[mid], lsb[mid]) <= 0) {
+            return;
+        }
+        int left  = from;
+        int right = mid;
+        int out   = from;
+        while (left < mid && right < to) {
+            if (compare(msb[left], lsb[left], msb[right], lsb[right]) <= 0) {
+                msbBuffer[out]   = msb[left];
+                lsbBuffer[out++] = lsb[left++];
+            } else {
+                msbBuffer[out]   = msb[right];
+                lsbBuffer[out++] = lsb[right++];
+            }
+        }
+        System.arraycopy(msb, left, msbBuffer, out, mid - left);
+        System.arraycopy(lsb, left, lsbBuffer, out, mid - left);
+        // the remainder of the right run is already in place
+        final int merged = out + mid - left;
+        System.arraycopy(msbBuffer, from, msb, from, merged - from);
+        System.arraycopy(lsbBuffer, from, lsb, from, merged - from);
+    }
+
+    private static final class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] msb;
+        private final long[] lsb;
+        private final int    from;
+        private final int    to;
+        private final long[] msbBuffer;
+        private final long[] lsbBuffer;
+
+        SortTask(final long[] msb,
+                 final long[] lsb,
+                 final int from,
+                 final int to,
+                 final long[] msbBuffer,
+                 final long[] lsbBuffer) {
+            this.msb       = msb;
+            this.lsb       = lsb;
+            this.from      = from;
+            this.to        = to;
+            this.msbBuffer = msbBuffer;
+            this.lsbBuffer = lsbBuffer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                sort(msb, lsb, from, to, msbBuffer, lsbBuffer);
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(msb, lsb, from, mid, msbBuffer, lsbBuffer),
+                      new SortTask(msb, lsb, mid, to, msbBuffer, lsbBuffer));
+            merge(msb, lsb, from, mid, to, msbBuffer, lsbBuffer);
+        }
+    }
+}
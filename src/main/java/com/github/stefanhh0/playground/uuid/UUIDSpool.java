@@ -0,0 +1,316 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Crash-safe staging area for bulk loads of IDs into the table of an entity
+ * whose only column is the id, e.g. {@code uuid.entity_with_uuid}.
+ * <p>
+ * IDs are appended as fixed-width records to memory-mapped segment files,
+ * rather than collected on the heap, so heap usage does not depend on the
+ * batch size. Each record carries a checksum over its ID and position, which
+ * tells written records from torn or never written ones. Full segments are
+ * drained to a {@link Sink} asynchronously, by default the table, committing
+ * every {@value #COMMIT_SIZE} rows, and deleted once drained. Segments left
+ * over by a crash are replayed in the order they were written when the spool
+ * is opened again. Since a segment may have been drained partially, rows are
+ * inserted with {@code ON CONFLICT DO NOTHING}.
+ * <p>
+ * {@link #append(long, long)} must not be called concurrently.
+ */
+public class UUIDSpool implements AutoCloseable {
+
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 20;
+
+    private static final int COMMIT_SIZE = 10000;
+
+    private static final long MAGIC = 0x314C4F4F50534955L;
+
+    private static final int HEADER_LONGS = 4;
+
+    private static final int RECORD_LONGS = 3;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+
+    private final Sink                 sink;
+    private final Path                 directory;
+    private final int                  recordsPerSegment;
+    private final ExecutorService      drainer     = Executors.newSingleThreadExecutor(runnable -> {
+                                                       final Thread thread = new Thread(runnable, "uuid-spool-drainer");
+                                                       thread.setDaemon(true);
+                                                       return thread;
+                                                   });
+    private final List<Future<?>>      drains      = new ArrayList<>();
+    private final AtomicLong           drainedRows = new AtomicLong();
+
+    private long        sequence;
+    private LongStorage segment;
+    private int         position;
+
+    private UUIDSpool(final Sink sink, final Path directory, final int recordsPerSegment) {
+        this.sink              = sink;
+        this.directory         = directory;
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+    /**
+     * Opens the spool in the directory, draining to the table of the entity,
+     * and replays the segments left over by a previous run in the background.
+     */
+    public static UUIDSpool open(final EntityManagerFactory emf,
+                                 final Class<?> entityClass,
+                                 final Path directory,
+                                 final int recordsPerSegment) throws IOException {
+        checkNotNull(emf, "emf must not be null");
+        return open(tableSink(emf, EntityTables.qualifiedName(entityClass)), directory, recordsPerSegment);
+    }
+
+    /**
+     * Opens the spool in the directory, draining to the sink, and replays the
+     * segments left over by a previous run in the background.
+     */
+    public static UUIDSpool open(final Sink sink, final Path directory, final int recordsPerSegment) throws IOException {
+        checkNotNull(sink, "sink must not be null");
+        checkArgument(recordsPerSegment > 0
+                      && HEADER_LONGS + (long) recordsPerSegment * RECORD_LONGS <= LongStorage.MAX_DIRECT_LENGTH,
+                      "recordsPerSegment %s is out of range",
+                      recordsPerSegment);
+        Files.createDirectories(directory);
+        final UUIDSpool spool = new UUIDSpool(sink, directory, recordsPerSegment);
+
+        final TreeMap<Long, Path> leftOver = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                                                                    SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (final Path file : files) {
+                final String name = file.getFileName()
+                                        .toString();
+                leftOver.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                                           name.length() - SEGMENT_SUFFIX.length())),
+                             file);
+            }
+        }
+        for (final Path file : leftOver.values()) {
+            spool.submit(file);
+        }
+        spool.sequence = leftOver.isEmpty() ? 0 : leftOver.lastKey() + 1;
+        spool.rotate();
+        return spool;
+    }
+
+    public void append(final long msb, final long lsb) {
+        checkState(segment != null, "spool is closed");
+        final int index = HEADER_LONGS + position * RECORD_LONGS;
+        segment.set(index, msb);
+        segment.set(index + 1, lsb);
+        segment.set(index + 2, checksum(msb, lsb, position));
+        if (++position == recordsPerSegment) {
+            seal();
+            rotate();
+        }
+    }
+
+    public void append(final UUID id) {
+        append(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * Writes the records appended so far to the current segment file, so they
+     * survive a crash of the operating system as well.
+     */
+    public void flush() {
+        checkState(segment != null, "spool is closed");
+        segment.force();
+    }
+
+    /**
+     * @return the number of segments written but not drained yet
+     */
+    public int getPendingSegments() {
+        int pending = 0;
+        synchronized (drains) {
+            for (final Future<?> drain : drains) {
+                if (!drain.isDone()) {
+                    pending++;
+                }
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @return the number of rows inserted from drained segments
+     */
+    public long getDrainedRows() {
+        return drainedRows.get();
+    }
+
+    /**
+     * Seals the current segment and waits until all segments are drained.
+     *
+     * @throws IllegalStateException If draining a segment failed, the segment
+     *                               is kept and replayed on the next open.
+     */
+    @Override
+    public void close() {
+        if (segment != null) {
+            seal();
+        }
+        drainer.shutdown();
+        IllegalStateException failure = null;
+        synchronized (drains) {
+            // all drains are awaited, so none still touches its segment once closed
+            for (final Future<?> drain : drains) {
+                try {
+                    drain.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread()
+                          .interrupt();
+                    throw new IllegalStateException(e);
+                } catch (final ExecutionException e) {
+                    if (failure == null) {
+                        failure = new IllegalStateException("Draining a segment failed", e.getCause());
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static long checksum(final long msb, final long lsb, final int position) {
+        // never 0, which is what records that have not been written contain
+        return UniqueIDHashTable.mix(msb ^ UniqueIDHashTable.mix(lsb ^ UniqueIDHashTable.mix(position + MAGIC))) | 1L;
+    }
+
+    private Path segmentFile(final long segmentSequence) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, segmentSequence, SEGMENT_SUFFIX));
+    }
+
+    private void rotate() {
+        final Path file = segmentFile(sequence);
+        try {
+            segment = LongStorage.map(file, HEADER_LONGS + recordsPerSegment * RECORD_LONGS);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segment.set(0, MAGIC);
+        segment.set(1, sequence);
+        segment.set(2, recordsPerSegment);
+        segment.force();
+        position = 0;
+        sequence++;
+    }
+
+    private void seal() {
+        final Path file = segmentFile(segment.get(1));
+        segment.force();
+        segment.close();
+        segment = null;
+        submit(file);
+    }
+
+    private void submit(final Path file) {
+        synchronized (drains) {
+            drains.add(drainer.submit(() -> drain(file)));
+        }
+    }
+
+    private Void drain(final Path file) throws IOException {
+        final LongStorage header = LongStorage.map(file, HEADER_LONGS);
+        final long        magic  = header.get(0);
+        final int         capacity;
+        try {
+            checkState(magic == MAGIC || magic == 0L, "%s is not a spool segment", file);
+            capacity = (int) header.get(2);
+        } finally {
+            header.close();
+        }
+        // a crash while the header was written, before any record
+        if (magic == 0L) {
+            Files.delete(file);
+            return null;
+        }
+
+        final LongStorage records = LongStorage.map(file, HEADER_LONGS + capacity * RECORD_LONGS);
+        try {
+            final long[] msb   = new long[COMMIT_SIZE];
+            final long[] lsb   = new long[COMMIT_SIZE];
+            int          count = 0;
+            for (int i = 0; i < capacity; i++) {
+                final int index = HEADER_LONGS + i * RECORD_LONGS;
+                msb[count] = records.get(index);
+                lsb[count] = records.get(index + 1);
+                if (records.get(index + 2) != checksum(msb[count], lsb[count], i)) {
+                    continue;
+                }
+                if (++count == COMMIT_SIZE) {
+                    drainedRows.addAndGet(sink.insert(msb, lsb, count));
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                drainedRows.addAndGet(sink.insert(msb, lsb, count));
+            }
+        } finally {
+            records.close();
+        }
+        Files.delete(file);
+        return null;
+    }
+
+    private static Sink tableSink(final EntityManagerFactory emf, final String table) {
+        return (msb, lsb, count) -> {
+            final int[] inserted = new int[1];
+            EntityTables.doWork(emf, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(String.format("INSERT INTO %s (id) VALUES (?) ON CONFLICT (id) DO NOTHING",
+                                                                                             table))) {
+                    for (int i = 0; i < count; i++) {
+                        statement.setObject(1, new UUID(msb[i], lsb[i]));
+                        statement.addBatch();
+                    }
+                    for (final int updated : statement.executeBatch()) {
+                        inserted[0] += Math.max(updated, 0);
+                    }
+                }
+            });
+            return inserted[0];
+        };
+    }
+
+    /**
+     * Receives the IDs of drained segments, in the order they were appended.
+     */
+    @FunctionalInterface
+    public interface Sink {
+
+        /**
+         * Inserts the IDs in a single transaction. IDs of a segment drained
+         * partially before a crash are passed again and must be skipped.
+         *
+         * @return the number of IDs inserted
+         */
+        int insert(long[] msb, long[] lsb, int count);
+    }
+}
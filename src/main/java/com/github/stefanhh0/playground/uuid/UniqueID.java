@@ -29,9 +29,20 @@ public final class UniqueID implements Serializable, Comparable<UniqueID> {
         return Date.from(getInstant());
     }
 
+    public long getMostSignificantBits() {
+        return uuid.getMostSignificantBits();
+    }
+
+    public long getLeastSignificantBits() {
+        return uuid.getLeastSignificantBits();
+    }
+
     @Override
     public int compareTo(UniqueID o) {
-        return uuid.compareTo(uuid);
+        return UUIDRadixSort.compare(uuid.getMostSignificantBits(),
+                                     uuid.getLeastSignificantBits(),
+                                     o.uuid.getMostSignificantBits(),
+                                     o.uuid.getLeastSignificantBits());
     }
 
     @Override
@@ -42,7 +53,7 @@ public final class UniqueID implements Serializable, Comparable<UniqueID> {
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof UniqueID) {
-            uuid.equals(((UniqueID) obj).uuid);
+            return uuid.equals(((UniqueID) obj).uuid);
         }
         return false;
     }
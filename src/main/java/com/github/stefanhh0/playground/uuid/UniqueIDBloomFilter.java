@@ -0,0 +1,222 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scalable Bloom filter over 128 bit IDs. It consists of stages, each a
+ * partitioned Bloom filter with one bit per hash function in its own
+ * partition. When a stage is filled up to its capacity a new stage with twice
+ * the capacity and half the false positive probability is added, so the total
+ * false positive probability stays below the configured one regardless of the
+ * number of IDs added.
+ * <p>
+ * A filter either lives on the heap or in a directory holding one
+ * memory-mapped file per stage, in which case it survives restarts. Not thread
+ * safe.
+ */
+public class UniqueIDBloomFilter {
+
+    private static final long MAGIC = 0x3142464449555541L;
+
+    private static final int HEADER_LONGS = 8;
+
+    private static final int K        = 1;
+    private static final int BITS     = 2;
+    private static final int CAPACITY = 3;
+    private static final int COUNT    = 4;
+
+    private static final double LN2 = Math.log(2);
+
+    private final Path        directory;
+    private final double      falsePositiveProbability;
+    private final List<Stage> stages = new ArrayList<>();
+
+    private UniqueIDBloomFilter(final Path directory, final double falsePositiveProbability) {
+        this.directory                = directory;
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    /**
+     * Creates a filter on the heap.
+     *
+     * @param expectedSize             the capacity of the first stage
+     * @param falsePositiveProbability the upper bound of the false positive
+     *                                 probability of the whole filter
+     */
+    public static UniqueIDBloomFilter create(final int expectedSize, final double falsePositiveProbability) {
+        checkArguments(expectedSize, falsePositiveProbability);
+        final UniqueIDBloomFilter filter = new UniqueIDBloomFilter(null, falsePositiveProbability);
+        filter.addStage(expectedSize);
+        return filter;
+    }
+
+    /**
+     * Opens the filter persisted in the directory, or creates a new one if the
+     * directory does not contain a filter.
+     *
+     * @see #create(int, double)
+     */
+    public static UniqueIDBloomFilter open(final Path directory,
+                                           final int expectedSize,
+                                           final double falsePositiveProbability) throws IOException {
+        checkArguments(expectedSize, falsePositiveProbability);
+        Files.createDirectories(directory);
+        final UniqueIDBloomFilter filter = new UniqueIDBloomFilter(directory, falsePositiveProbability);
+        for (int i = 0; Files.exists(filter.stageFile(i)); i++) {
+            filter.stages.add(Stage.open(filter.stageFile(i)));
+        }
+        if (filter.stages.isEmpty()) {
+            filter.addStage(expectedSize);
+        }
+        return filter;
+    }
+
+    /**
+     * @return true if no ID has been added yet
+     */
+    public boolean isEmpty() {
+        return getCount() == 0;
+    }
+
+    /**
+     * @return the number of IDs added, including IDs that have been added more
+     *         than once but were not recognized as contained
+     */
+    public long getCount() {
+        long count = 0;
+        for (final Stage stage : stages) {
+            count += stage.storage.get(COUNT);
+        }
+        return count;
+    }
+
+    public boolean mightContain(final long msb, final long lsb) {
+        final long h1 = hash1(msb, lsb);
+        final long h2 = hash2(msb, lsb);
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            if (stages.get(i)
+                      .mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the ID unless the filter might already contain it.
+     *
+     * @return true if the ID has not been contained before for sure
+     */
+    public boolean put(final long msb, final long lsb) {
+        if (mightContain(msb, lsb)) {
+            return false;
+        }
+        Stage stage = stages.get(stages.size() - 1);
+        if (stage.storage.get(COUNT) >= stage.storage.get(CAPACITY)) {
+            stage = addStage(Math.multiplyExact(stage.storage.get(CAPACITY), 2));
+        }
+        stage.put(hash1(msb, lsb), hash2(msb, lsb));
+        return true;
+    }
+
+    /**
+     * Writes all changes to the files of a persisted filter.
+     */
+    public void flush() {
+        for (final Stage stage : stages) {
+            stage.storage.force();
+        }
+    }
+
+    private static void checkArguments(final int expectedSize, final double falsePositiveProbability) {
+        checkArgument(expectedSize > 0, "expectedSize must be positive");
+        checkArgument(falsePositiveProbability > 0 && falsePositiveProbability < 1,
+                      "falsePositiveProbability must be between 0 and 1");
+    }
+
+    private static long hash1(final long msb, final long lsb) {
+        return UniqueIDHashTable.mix(msb * 0x9E3779B97F4A7C15L ^ lsb);
+    }
+
+    private static long hash2(final long msb, final long lsb) {
+        return UniqueIDHashTable.mix(lsb * 0xC2B2AE3D27D4EB4FL ^ Long.rotateLeft(msb, 32)) | 1L;
+    }
+
+    private Path stageFile(final int index) {
+        return directory.resolve("stage-" + index + ".bloom");
+    }
+
+    private Stage addStage(final long capacity) {
+        // stage i gets p * (1 - r) * r^i with r = 1/2, which sums up to < p
+        final double probability = falsePositiveProbability / (2L << stages.size());
+        final int    k           = Math.max(1, (int) Math.ceil(-Math.log(probability) / LN2));
+        final long   bits        = (long) Math.ceil(-capacity * Math.log(probability) / (LN2 * LN2));
+        final long   partition   = (bits / k + 63) & ~63L;
+        final long   length      = HEADER_LONGS + partition / 64 * k;
+        checkState(length <= LongStorage.MAX_DIRECT_LENGTH, "stage for %s IDs is too large", capacity);
+
+        final LongStorage storage;
+        try {
+            storage = directory == null ? LongStorage.allocate((int) length, false)
+                                        : LongStorage.map(stageFile(stages.size()), (int) length);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        storage.set(0, MAGIC);
+        storage.set(K, k);
+        storage.set(BITS, partition);
+        storage.set(CAPACITY, capacity);
+        storage.set(COUNT, 0);
+        final Stage stage = new Stage(storage);
+        stages.add(stage);
+        return stage;
+    }
+
+    private static final class Stage {
+
+        private final LongStorage storage;
+        private final int         k;
+        private final long        partitionBits;
+
+        Stage(final LongStorage storage) {
+            this.storage       = storage;
+            this.k             = (int) storage.get(K);
+            this.partitionBits = storage.get(BITS);
+        }
+
+        static Stage open(final Path file) throws IOException {
+            final LongStorage header = LongStorage.map(file, HEADER_LONGS);
+            checkState(header.get(0) == MAGIC, "%s is not a bloom filter stage", file);
+            final long length = HEADER_LONGS + header.get(BITS) / 64 * header.get(K);
+            return new Stage(LongStorage.map(file, (int) length));
+        }
+
+        boolean mightContain(final long h1, final long h2) {
+            long h = h1;
+            for (int i = 0; i < k; i++, h += h2) {
+                final long bit = i * partitionBits + Long.remainderUnsigned(h, partitionBits);
+                if ((storage.get(HEADER_LONGS + (int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(final long h1, final long h2) {
+            long h = h1;
+            for (int i = 0; i < k; i++, h += h2) {
+                final long bit   = i * partitionBits + Long.remainderUnsigned(h, partitionBits);
+                final int  index = HEADER_LONGS + (int) (bit >>> 6);
+                storage.set(index, storage.get(index) | (1L << bit));
+            }
+            storage.set(COUNT, storage.get(COUNT) + 1);
+        }
+    }
+}
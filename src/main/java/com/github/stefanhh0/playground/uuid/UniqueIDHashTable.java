@@ -0,0 +1,245 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table with linear probing over 128 bit keys, which are
+ * stored inline as two {@code long}s per slot in a {@link LongStorage}. The
+ * nil UUID marks empty slots, so it is kept in the extra slot
+ * {@link #capacity()} instead. Removal shifts following entries back, hence
+ * there are no tombstones.
+ * <p>
+ * Subclasses keep their values in arrays of {@code capacity() + 1} slots.
+ */
+abstract class UniqueIDHashTable {
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Keys take two slots per entry, so a larger capacity overflows the int
+     * length of the key storage, on the heap and off-heap alike.
+     */
+    private static final int MAX_CAPACITY = 1 << 29;
+
+    private final boolean offHeap;
+
+    private LongStorage keys;
+    private int         capacity;
+    private int         threshold;
+    private int         size;
+    private boolean     hasNilKey;
+
+    UniqueIDHashTable(final int expectedSize, final boolean offHeap) {
+        checkArgument(expectedSize >= 0, "expectedSize must not be negative");
+        this.offHeap = offHeap;
+        int initialCapacity = MIN_CAPACITY;
+        while (thresholdOf(initialCapacity) < expectedSize) {
+            checkArgument(initialCapacity < MAX_CAPACITY, "expectedSize %s is too large", expectedSize);
+            initialCapacity <<= 1;
+        }
+        allocate(initialCapacity);
+    }
+
+    /**
+     * Mixes both halves of the key with a multiply and the murmur3 finalizer,
+     * since the lower bits of time-ordered IDs are constant per node.
+     */
+    static int hash(final long msb, final long lsb) {
+        return (int) mix(msb * 0x9E3779B97F4A7C15L ^ lsb);
+    }
+
+    /**
+     * The murmur3 64 bit finalizer.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public int size() {
+        return size + (hasNilKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public void clear() {
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            clearValue(slot);
+            if (slot < capacity) {
+                keys.set(slot << 1, 0L);
+                keys.set((slot << 1) + 1, 0L);
+            }
+        }
+        size      = 0;
+        hasNilKey = false;
+    }
+
+    final int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the slot of the key or -1 if absent
+     */
+    final int slotOf(final long msb, final long lsb) {
+        if (msb == 0L && lsb == 0L) {
+            return hasNilKey ? capacity : -1;
+        }
+        final int mask = capacity - 1;
+        for (int slot = hash(msb, lsb) & mask;; slot = (slot + 1) & mask) {
+            final long m = keys.get(slot << 1);
+            final long l = keys.get((slot << 1) + 1);
+            if (m == msb && l == lsb) {
+                return slot;
+            }
+            if (m == 0L && l == 0L) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return the slot of the key if present, otherwise {@code -(slot + 1)} of
+     *         the slot the key has been inserted at
+     */
+    final int insert(final long msb, final long lsb) {
+        if (msb == 0L && lsb == 0L) {
+            if (hasNilKey) {
+                return capacity;
+            }
+            hasNilKey = true;
+            return -(capacity + 1);
+        }
+        if (size >= threshold) {
+            checkArgument(capacity < MAX_CAPACITY, "capacity exhausted at %s entries", size);
+            resize(capacity << 1);
+        }
+        final int mask = capacity - 1;
+        for (int slot = hash(msb, lsb) & mask;; slot = (slot + 1) & mask) {
+            final long m = keys.get(slot << 1);
+            final long l = keys.get((slot << 1) + 1);
+            if (m == msb && l == lsb) {
+                return slot;
+            }
+            if (m == 0L && l == 0L) {
+                keys.set(slot << 1, msb);
+                keys.set((slot << 1) + 1, lsb);
+                size++;
+                return -(slot + 1);
+            }
+        }
+    }
+
+    /**
+     * Removes the key from the slot and shifts following entries of the probe
+     * sequence back.
+     */
+    final void delete(int slot) {
+        if (slot == capacity) {
+            clearValue(slot);
+            hasNilKey = false;
+            return;
+        }
+        final int mask = capacity - 1;
+        for (int next = (slot + 1) & mask;; next = (next + 1) & mask) {
+            final long m = keys.get(next << 1);
+            final long l = keys.get((next << 1) + 1);
+            if (m == 0L && l == 0L) {
+                break;
+            }
+            final int home = hash(m, l) & mask;
+            if (slot <= next ? slot < home && home <= next : slot < home || home <= next) {
+                continue;
+            }
+            keys.set(slot << 1, m);
+            keys.set((slot << 1) + 1, l);
+            moveValue(next, slot);
+            slot = next;
+        }
+        keys.set(slot << 1, 0L);
+        keys.set((slot << 1) + 1, 0L);
+        clearValue(slot);
+        size--;
+    }
+
+    /**
+     * @return the next occupied slot at or after {@code from}, the nil key slot
+     *         being last, or -1
+     */
+    final int nextSlot(final int from) {
+        for (int slot = from; slot < capacity; slot++) {
+            if (keys.get(slot << 1) != 0L || keys.get((slot << 1) + 1) != 0L) {
+                return slot;
+            }
+        }
+        return hasNilKey && from <= capacity ? capacity : -1;
+    }
+
+    final long msbAt(final int slot) {
+        return slot == capacity ? 0L : keys.get(slot << 1);
+    }
+
+    final long lsbAt(final int slot) {
+        return slot == capacity ? 0L : keys.get((slot << 1) + 1);
+    }
+
+    /**
+     * Called after the table has been resized, {@code newSlots[oldSlot]} is the
+     * new slot of each occupied old slot, or -1.
+     */
+    abstract void rehashValues(int slots, int[] newSlots);
+
+    abstract void moveValue(int from, int to);
+
+    abstract void clearValue(int slot);
+
+    private static int thresholdOf(final int capacity) {
+        return capacity - (capacity >>> 2);
+    }
+
+    private void allocate(final int newCapacity) {
+        keys      = LongStorage.allocate(newCapacity << 1, offHeap);
+        capacity  = newCapacity;
+        threshold = thresholdOf(newCapacity);
+    }
+
+    private void resize(final int newCapacity) {
+        final LongStorage oldKeys     = keys;
+        final int         oldCapacity = capacity;
+        final int[]       newSlots    = new int[oldCapacity + 1];
+        Arrays.fill(newSlots, -1);
+        allocate(newCapacity);
+
+        final int mask = newCapacity - 1;
+        for (int old = 0; old < oldCapacity; old++) {
+            final long m = oldKeys.get(old << 1);
+            final long l = oldKeys.get((old << 1) + 1);
+            if (m == 0L && l == 0L) {
+                continue;
+            }
+            int slot = hash(m, l) & mask;
+            while (keys.get(slot << 1) != 0L || keys.get((slot << 1) + 1) != 0L) {
+                slot = (slot + 1) & mask;
+            }
+            keys.set(slot << 1, m);
+            keys.set((slot << 1) + 1, l);
+            newSlots[old] = slot;
+        }
+        if (hasNilKey) {
+            newSlots[oldCapacity] = newCapacity;
+        }
+        rehashValues(newCapacity + 1, newSlots);
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.stefanhh0.playground.uuid;
+
+/**
+ * Map from 128 bit IDs to {@code long}s without per entry objects, see
+ * {@link UniqueIDHashTable}. Keys and values take 24 bytes per slot,
+ * optionally off-heap.
+ */
+public class UniqueIDLongMap extends UniqueIDHashTable {
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        void accept(long msb, long lsb, long value);
+    }
+
+    private LongStorage values;
+
+    public UniqueIDLongMap() {
+        this(0);
+    }
+
+    public UniqueIDLongMap(final int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    public UniqueIDLongMap(final int expectedSize, final boolean offHeap) {
+        super(expectedSize, offHeap);
+        values = LongStorage.allocate(capacity() + 1, offHeap);
+    }
+
+    public boolean containsKey(final long msb, final long lsb) {
+        return slotOf(msb, lsb) >= 0;
+    }
+
+    public long getOrDefault(final long msb, final long lsb, final long defaultValue) {
+        final int slot = slotOf(msb, lsb);
+        return slot < 0 ? defaultValue : values.get(slot);
+    }
+
+    public long getOrDefault(final UniqueID id, final long defaultValue) {
+        return getOrDefault(id.getMostSignificantBits(), id.getLeastSignificantBits(), defaultValue);
+    }
+
+    /**
+     * @return true if the ID has not been contained before
+     */
+    public boolean put(final long msb, final long lsb, final long value) {
+        final int slot = insert(msb, lsb);
+        if (slot < 0) {
+            values.set(-slot - 1, value);
+            return true;
+        }
+        values.set(slot, value);
+        return false;
+    }
+
+    public boolean put(final UniqueID id, final long value) {
+        return put(id.getMostSignificantBits(), id.getLeastSignificantBits(), value);
+    }
+
+    /**
+     * @return true if the ID has been contained
+     */
+    public boolean remove(final long msb, final long lsb) {
+        final int slot = slotOf(msb, lsb);
+        if (slot < 0) {
+            return false;
+        }
+        delete(slot);
+        return true;
+    }
+
+    public void forEach(final EntryConsumer action) {
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            action.accept(msbAt(slot), lsbAt(slot), values.get(slot));
+        }
+    }
+
+    @Override
+    void rehashValues(final int slots, final int[] newSlots) {
+        final LongStorage oldValues = values;
+        values = LongStorage.allocate(slots, isOffHeap());
+        for (int old = 0; old < newSlots.length; old++) {
+            if (newSlots[old] >= 0) {
+                values.set(newSlots[old], oldValues.get(old));
+            }
+        }
+    }
+
+    @Override
+    void moveValue(final int from, final int to) {
+        values.set(to, values.get(from));
+    }
+
+    @Override
+    void clearValue(final int slot) {
+        values.set(slot, 0L);
+    }
+}
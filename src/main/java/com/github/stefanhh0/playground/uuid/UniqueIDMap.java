@@ -0,0 +1,111 @@
+package com.github.stefanhh0.playground.uuid;
+
+/**
+ * Map from 128 bit IDs to objects without per entry objects, see
+ * {@link UniqueIDHashTable}. The keys take 16 bytes per slot, optionally
+ * off-heap, the values a reference per slot on the heap.
+ *
+ * @param <V> the type of the values, null values are not supported
+ */
+public class UniqueIDMap<V> extends UniqueIDHashTable {
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+
+        void accept(long msb, long lsb, V value);
+    }
+
+    private Object[] values;
+
+    public UniqueIDMap() {
+        this(0);
+    }
+
+    public UniqueIDMap(final int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    public UniqueIDMap(final int expectedSize, final boolean offHeap) {
+        super(expectedSize, offHeap);
+        values = new Object[capacity() + 1];
+    }
+
+    public boolean containsKey(final long msb, final long lsb) {
+        return slotOf(msb, lsb) >= 0;
+    }
+
+    /**
+     * @return the value or null if the ID is not contained
+     */
+    public V get(final long msb, final long lsb) {
+        final int slot = slotOf(msb, lsb);
+        return slot < 0 ? null : valueAt(slot);
+    }
+
+    public V get(final UniqueID id) {
+        return get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * @return the previous value or null if the ID has not been contained
+     */
+    public V put(final long msb, final long lsb, final V value) {
+        final int slot = insert(msb, lsb);
+        if (slot < 0) {
+            values[-slot - 1] = value;
+            return null;
+        }
+        final V previous = valueAt(slot);
+        values[slot] = value;
+        return previous;
+    }
+
+    public V put(final UniqueID id, final V value) {
+        return put(id.getMostSignificantBits(), id.getLeastSignificantBits(), value);
+    }
+
+    /**
+     * @return the removed value or null if the ID has not been contained
+     */
+    public V remove(final long msb, final long lsb) {
+        final int slot = slotOf(msb, lsb);
+        if (slot < 0) {
+            return null;
+        }
+        final V previous = valueAt(slot);
+        delete(slot);
+        return previous;
+    }
+
+    public void forEach(final EntryConsumer<? super V> action) {
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            action.accept(msbAt(slot), lsbAt(slot), valueAt(slot));
+        }
+    }
+
+    @Override
+    void rehashValues(final int slots, final int[] newSlots) {
+        final Object[] oldValues = values;
+        values = new Object[slots];
+        for (int old = 0; old < newSlots.length; old++) {
+            if (newSlots[old] >= 0) {
+                values[newSlots[old]] = oldValues[old];
+            }
+        }
+    }
+
+    @Override
+    void moveValue(final int from, final int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    void clearValue(final int slot) {
+        values[slot] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(final int slot) {
+        return (V) values[slot];
+    }
+}
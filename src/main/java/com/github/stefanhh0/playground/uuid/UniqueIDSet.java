@@ -0,0 +1,72 @@
+package com.github.stefanhh0.playground.uuid;
+
+import com.github.stefanhh0.playground.uuid.UUIDMerger.Sink;
+
+/**
+ * Set of 128 bit IDs without per entry objects, see
+ * {@link UniqueIDHashTable}. The keys take 16 bytes per slot, optionally
+ * off-heap.
+ */
+public class UniqueIDSet extends UniqueIDHashTable {
+
+    public UniqueIDSet() {
+        this(0);
+    }
+
+    public UniqueIDSet(final int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    public UniqueIDSet(final int expectedSize, final boolean offHeap) {
+        super(expectedSize, offHeap);
+    }
+
+    /**
+     * @return true if the ID has not been contained before
+     */
+    public boolean add(final long msb, final long lsb) {
+        return insert(msb, lsb) < 0;
+    }
+
+    public boolean add(final UniqueID id) {
+        return add(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    public boolean contains(final long msb, final long lsb) {
+        return slotOf(msb, lsb) >= 0;
+    }
+
+    public boolean contains(final UniqueID id) {
+        return contains(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * @return true if the ID has been contained
+     */
+    public boolean remove(final long msb, final long lsb) {
+        final int slot = slotOf(msb, lsb);
+        if (slot < 0) {
+            return false;
+        }
+        delete(slot);
+        return true;
+    }
+
+    public void forEach(final Sink action) {
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            action.accept(msbAt(slot), lsbAt(slot));
+        }
+    }
+
+    @Override
+    void rehashValues(final int slots, final int[] newSlots) {
+    }
+
+    @Override
+    void moveValue(final int from, final int to) {
+    }
+
+    @Override
+    void clearValue(final int slot) {
+    }
+}
@@ -0,0 +1,225 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.f4b6a3.uuid.UuidCreator;
+
+public class DuplicateGuardTest {
+
+    private static final String SCAN = "SELECT id FROM uuid.entity_with_uuid";
+
+    private static final String SCAN_ABOVE = "SELECT id FROM uuid.entity_with_uuid WHERE id > ?";
+
+    private static final String FIND = "SELECT id FROM uuid.entity_with_uuid WHERE id = ANY (?)";
+
+    private static final String INSERT = "INSERT INTO uuid.entity_with_uuid (id) VALUES (?) ON CONFLICT (id) DO NOTHING";
+
+    private static final double FALSE_POSITIVE_PROBABILITY = 1e-9;
+
+    @Test
+    void testFindDuplicatesQueriesFilterHitsOnly() throws Exception {
+        final UUID existing = UuidCreator.getTimeOrdered();
+        final UUID other    = UuidCreator.getTimeOrdered();
+        final UUID added    = UuidCreator.getTimeOrdered();
+        final UUID fresh    = UuidCreator.getTimeOrdered();
+
+        final Connection        connection = EasyMock.mock(Connection.class);
+        final PreparedStatement scan       = query(resultSet(existing, other));
+        final PreparedStatement find       = query(resultSet(existing));
+        final Array             array      = EasyMock.niceMock(Array.class);
+        final Capture<Object[]> queried    = Capture.newInstance();
+        EasyMock.expect(connection.prepareStatement(SCAN))
+                .andReturn(scan);
+        EasyMock.expect(connection.prepareStatement(FIND))
+                .andReturn(find);
+        EasyMock.expect(connection.createArrayOf(EasyMock.eq("uuid"), EasyMock.capture(queried)))
+                .andReturn(array);
+        find.setArray(1, array);
+        EasyMock.replay(connection, array, scan, find);
+
+        final DuplicateGuard guard = DuplicateGuard.open(emf(connection),
+                                                         EntityWithUUID.class,
+                                                         null,
+                                                         1000,
+                                                         FALSE_POSITIVE_PROBABILITY);
+        // the repeated ID is neither queried twice nor reported as duplicate
+        final UniqueIDSet duplicates = guard.findDuplicates(msb(existing, added, added, fresh),
+                                                            lsb(existing, added, added, fresh),
+                                                            4);
+
+        EasyMock.verify(connection, find);
+        assertThat(queried.getValue()).containsExactly(existing);
+        assertThat(duplicates.size()).isEqualTo(1);
+        assertThat(duplicates.contains(new UniqueID(existing))).isTrue();
+        assertThat(guard.getHighWaterMark()).isEqualTo(other);
+    }
+
+    @Test
+    void testReopenScansAboveHighWaterMark(@TempDir final Path directory) throws Exception {
+        final UUID first  = UuidCreator.getTimeOrdered();
+        final UUID second = UuidCreator.getTimeOrdered();
+        final UUID third  = UuidCreator.getTimeOrdered();
+
+        final Connection        connection = EasyMock.mock(Connection.class);
+        final PreparedStatement scan       = query(resultSet(second, first));
+        EasyMock.expect(connection.prepareStatement(SCAN))
+                .andReturn(scan);
+        EasyMock.replay(connection, scan);
+        assertThat(DuplicateGuard.open(emf(connection), EntityWithUUID.class, directory, 1000, FALSE_POSITIVE_PROBABILITY)
+                                 .getHighWaterMark()).isEqualTo(second);
+        EasyMock.verify(connection);
+
+        final Connection        reopened = EasyMock.mock(Connection.class);
+        final PreparedStatement above    = query(resultSet(third));
+        above.setFetchSize(EasyMock.anyInt());
+        above.setObject(1, second);
+        EasyMock.expect(reopened.prepareStatement(SCAN_ABOVE))
+                .andReturn(above);
+        EasyMock.replay(reopened, above);
+
+        final DuplicateGuard guard = DuplicateGuard.open(emf(reopened),
+                                                         EntityWithUUID.class,
+                                                         directory,
+                                                         1000,
+                                                         FALSE_POSITIVE_PROBABILITY);
+
+        EasyMock.verify(reopened, above);
+        assertThat(guard.getHighWaterMark()).isEqualTo(third);
+    }
+
+    @Test
+    void testImportBatchAdvancesHighWaterMark(@TempDir final Path directory) throws Exception {
+        final UUID existing = UuidCreator.getTimeOrdered();
+        final UUID first    = UuidCreator.getTimeOrdered();
+        final UUID second   = UuidCreator.getTimeOrdered();
+
+        final Connection        connection = EasyMock.mock(Connection.class);
+        final PreparedStatement scan       = query(resultSet(existing));
+        final PreparedStatement insert     = EasyMock.mock(PreparedStatement.class);
+        EasyMock.expect(connection.prepareStatement(SCAN))
+                .andReturn(scan);
+        EasyMock.expect(connection.prepareStatement(INSERT))
+                .andReturn(insert);
+        insert.setObject(1, second);
+        insert.setObject(1, first);
+        insert.addBatch();
+        EasyMock.expectLastCall()
+                .times(2);
+        EasyMock.expect(insert.executeBatch())
+                .andReturn(new int[] { 0, 1 });
+        insert.close();
+        EasyMock.replay(connection, scan, insert);
+
+        final DuplicateGuard guard = DuplicateGuard.open(emf(connection),
+                                                         EntityWithUUID.class,
+                                                         directory,
+                                                         1000,
+                                                         FALSE_POSITIVE_PROBABILITY);
+        // the second row was inserted by others meanwhile, the filter missed it
+        assertThat(guard.importBatch(msb(second, first, second), lsb(second, first, second), 3)).isEqualTo(1);
+
+        EasyMock.verify(connection, insert);
+        assertThat(guard.getHighWaterMark()).isEqualTo(second);
+
+        final Connection        reopened = EasyMock.mock(Connection.class);
+        final PreparedStatement above    = query(resultSet());
+        above.setFetchSize(EasyMock.anyInt());
+        above.setObject(1, second);
+        EasyMock.expect(reopened.prepareStatement(SCAN_ABOVE))
+                .andReturn(above);
+        EasyMock.replay(reopened, above);
+
+        assertThat(DuplicateGuard.open(emf(reopened), EntityWithUUID.class, directory, 1000, FALSE_POSITIVE_PROBABILITY)
+                                 .getHighWaterMark()).isEqualTo(second);
+        EasyMock.verify(reopened, above);
+    }
+
+    /**
+     * Mocks the factory of entity managers whose sessions run all work with
+     * the connection.
+     */
+    private static EntityManagerFactory emf(final Connection connection) {
+        final Session session = EasyMock.mock(Session.class);
+        session.doWork(EasyMock.anyObject(Work.class));
+        EasyMock.expectLastCall()
+                .andAnswer(() -> {
+                    ((Work) EasyMock.getCurrentArguments()[0]).execute(connection);
+                    return null;
+                })
+                .anyTimes();
+        final EntityTransaction transaction = EasyMock.niceMock(EntityTransaction.class);
+        final EntityManager     em          = EasyMock.niceMock(EntityManager.class);
+        EasyMock.expect(em.getTransaction())
+                .andReturn(transaction)
+                .anyTimes();
+        EasyMock.expect(em.unwrap(Session.class))
+                .andReturn(session)
+                .anyTimes();
+        final EntityManagerFactory emf = EasyMock.mock(EntityManagerFactory.class);
+        EasyMock.expect(emf.createEntityManager())
+                .andReturn(em)
+                .anyTimes();
+        EasyMock.replay(session, transaction, em, emf);
+        return emf;
+    }
+
+    /**
+     * Mocks a statement returning the result set. It is replayed by the
+     * caller, so expectations of the parameters can be added.
+     */
+    private static PreparedStatement query(final ResultSet resultSet) throws SQLException {
+        final PreparedStatement statement = EasyMock.niceMock(PreparedStatement.class);
+        EasyMock.expect(statement.executeQuery())
+                .andReturn(resultSet);
+        return statement;
+    }
+
+    private static ResultSet resultSet(final UUID... ids) throws SQLException {
+        final ResultSet resultSet = EasyMock.niceMock(ResultSet.class);
+        for (final UUID id : ids) {
+            EasyMock.expect(resultSet.next())
+                    .andReturn(true);
+            EasyMock.expect(resultSet.getObject(1, UUID.class))
+                    .andReturn(id);
+        }
+        EasyMock.expect(resultSet.next())
+                .andReturn(false);
+        EasyMock.replay(resultSet);
+        return resultSet;
+    }
+
+    private static long[] msb(final UUID... ids) {
+        final long[] msb = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            msb[i] = ids[i].getMostSignificantBits();
+        }
+        return msb;
+    }
+
+    private static long[] lsb(final UUID... ids) {
+        final long[] lsb = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            lsb[i] = ids[i].getLeastSignificantBits();
+        }
+        return lsb;
+    }
+}
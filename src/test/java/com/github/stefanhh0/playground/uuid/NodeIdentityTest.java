@@ -0,0 +1,312 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+
+import org.easymock.EasyMock;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.junit.jupiter.api.Test;
+
+import com.github.f4b6a3.uuid.factory.rfc4122.TimeOrderedFactory;
+import com.github.f4b6a3.uuid.util.UuidUtil;
+
+public class NodeIdentityTest {
+
+    private static final Instant NOW = Instant.parse("2022-08-01T12:00:00Z");
+
+    private static final String SEED = "INSERT INTO uuid.node_lease";
+
+    private static final String TAKE_OVER = "RETURNING node_id, clock_seq, last_timestamp";
+
+    private static final String RENEW = "UPDATE uuid.node_lease SET expires_at = now() + ";
+
+    private static final String RELEASE = "UPDATE uuid.node_lease SET expires_at = now(), ";
+
+    private static final int NODE_ID = 3;
+
+    @Test
+    void testTimestampsIncreaseWhenClockStepsBack() {
+        final SteppingClock                  clock        = new SteppingClock(NOW);
+        final NodeIdentity.LeaseTimeFunction timeFunction = new NodeIdentity.LeaseTimeFunction(clock, 0L, () -> {
+        });
+        final TimeOrderedFactory             factory      = factory(timeFunction, 42, 7);
+
+        long previous = -1;
+        for (int i = 0; i < 1000; i++) {
+            if (i == 500) {
+                clock.instant = NOW.minusSeconds(3600);
+            }
+            final UUID id        = factory.create();
+            final long timestamp = UuidUtil.getTimestamp(id);
+            assertThat(timestamp).isGreaterThan(previous);
+            previous = timestamp;
+        }
+        assertThat(timeFunction.getLastTimestamp()).isEqualTo(previous);
+        assertThat(previous).isEqualTo(TimeOrderedUUIDUtil.toTimestamp(NOW) + 999);
+    }
+
+    @Test
+    void testTimestampsStartAboveFloor() {
+        final long                           floor        = TimeOrderedUUIDUtil.toTimestamp(NOW.plusSeconds(60));
+        final NodeIdentity.LeaseTimeFunction timeFunction = new NodeIdentity.LeaseTimeFunction(new SteppingClock(NOW),
+                                                                                               floor,
+                                                                                               () -> {
+                                                                                               });
+
+        assertThat(UuidUtil.getTimestamp(factory(timeFunction, 0, 0).create())).isEqualTo(floor + 1);
+    }
+
+    @Test
+    void testNodeAndClockSequenceAreEmbedded() {
+        final NodeIdentity.LeaseTimeFunction timeFunction = new NodeIdentity.LeaseTimeFunction(new SteppingClock(NOW),
+                                                                                               0L,
+                                                                                               () -> {
+                                                                                               });
+        final UUID                           id           = factory(timeFunction, 1023, 0x2ABC).create();
+
+        assertThat(id.version()).isEqualTo(6);
+        assertThat(UuidUtil.getNodeIdentifier(id)).isEqualTo(0x0100000003FFL);
+        assertThat(UuidUtil.getClockSequence(id)).isEqualTo(0x2ABC);
+        assertThat(UuidUtil.getInstant(id)).isEqualTo(NOW);
+    }
+
+    @Test
+    void testExpiredLeaseStopsCreation() {
+        final NodeIdentity.LeaseTimeFunction timeFunction = new NodeIdentity.LeaseTimeFunction(new SteppingClock(NOW),
+                                                                                               0L,
+                                                                                               () -> {
+                                                                                                   throw new IllegalStateException("expired");
+                                                                                               });
+
+        assertThatThrownBy(() -> factory(timeFunction, 0, 0).create()).isInstanceOf(IllegalStateException.class);
+        assertThat(timeFunction.getLastTimestamp()).isZero();
+    }
+
+    @Test
+    void testRenewalOfTakenOverLeaseRevokesIt() throws SQLException {
+        final Connection connection = connection(lease(0), update(0, 0), update(1, 0));
+
+        try (NodeIdentity identity = NodeIdentity.acquire(emf(connection, new AtomicBoolean(true)),
+                                                          16,
+                                                          Duration.ofSeconds(60))) {
+            assertThat(identity.getNodeId()).isEqualTo(NODE_ID);
+            assertThat(identity.isValid()).isTrue();
+
+            identity.renew();
+
+            assertThat(identity.isValid()).isFalse();
+            assertThatThrownBy(() -> identity.createFactory()
+                                             .create()).isInstanceOf(IllegalStateException.class)
+                                                       .hasMessage("Lease of node ID 3 has been taken over");
+        }
+    }
+
+    @Test
+    void testFailedRenewalsExpireLease() throws SQLException, InterruptedException {
+        final AtomicBoolean available = new AtomicBoolean(true);
+        final Connection    connection = connection(lease(0), update(1, 0), update(1, 0));
+
+        try (NodeIdentity identity = NodeIdentity.acquire(emf(connection, available), 16, Duration.ofMillis(300))) {
+            available.set(false);
+            identity.renew();
+
+            final long deadline = System.nanoTime() + Duration.ofSeconds(10)
+                                                              .toNanos();
+            while (identity.isValid()) {
+                assertThat(System.nanoTime() - deadline).isNegative();
+                Thread.sleep(10);
+            }
+            assertThatThrownBy(() -> identity.createFactory()
+                                             .create()).isInstanceOf(IllegalStateException.class)
+                                                       .hasMessage("Lease of node ID 3 has expired")
+                                                       .hasCauseInstanceOf(PersistenceException.class);
+            available.set(true);
+        }
+    }
+
+    @Test
+    void testDeadlineIsTakenBeforeTransaction() throws SQLException {
+        // each transaction takes longer than the lease lives
+        final Connection connection = connection(lease(100), update(1, 100), update(1, 0));
+
+        try (NodeIdentity identity = NodeIdentity.acquire(emf(connection, new AtomicBoolean(true)),
+                                                          16,
+                                                          Duration.ofMillis(50))) {
+            assertThat(identity.isValid()).isFalse();
+
+            identity.renew();
+
+            assertThat(identity.isValid()).isFalse();
+        }
+    }
+
+    @Test
+    void testCloseReleasesLease() throws SQLException {
+        final PreparedStatement release    = EasyMock.mock(PreparedStatement.class);
+        final Connection        connection = connection(lease(0), update(1, 0), release);
+        release.setLong(EasyMock.eq(1), EasyMock.anyLong());
+        release.setInt(2, NODE_ID);
+        release.setString(EasyMock.eq(3), EasyMock.anyString());
+        EasyMock.expect(release.executeUpdate())
+                .andReturn(1);
+        release.close();
+        EasyMock.replay(release);
+
+        final NodeIdentity identity = NodeIdentity.acquire(emf(connection, new AtomicBoolean(true)),
+                                                           16,
+                                                           Duration.ofSeconds(60));
+        identity.close();
+
+        EasyMock.verify(release);
+        assertThat(identity.isValid()).isFalse();
+        assertThatThrownBy(() -> identity.createFactory()
+                                         .create()).isInstanceOf(IllegalStateException.class)
+                                                   .hasMessage("Node identity is closed");
+    }
+
+    private static TimeOrderedFactory factory(final NodeIdentity.LeaseTimeFunction timeFunction,
+                                              final int nodeId,
+                                              final int clockSeq) {
+        return TimeOrderedFactory.builder()
+                                 .withTimeFunction(timeFunction)
+                                 .withNodeId(NodeIdentity.toNode(nodeId))
+                                 .withClockSeq(clockSeq)
+                                 .build();
+    }
+
+    /**
+     * Mocks a connection of a table with an expired row of {@link #NODE_ID}.
+     */
+    private static Connection connection(final PreparedStatement takeOver,
+                                         final PreparedStatement renew,
+                                         final PreparedStatement release) throws SQLException {
+        final PreparedStatement seed       = EasyMock.niceMock(PreparedStatement.class);
+        final Connection        connection = EasyMock.mock(Connection.class);
+        EasyMock.expect(connection.prepareStatement(EasyMock.startsWith(SEED)))
+                .andReturn(seed)
+                .anyTimes();
+        EasyMock.expect(connection.prepareStatement(EasyMock.contains(TAKE_OVER)))
+                .andReturn(takeOver)
+                .anyTimes();
+        EasyMock.expect(connection.prepareStatement(EasyMock.startsWith(RENEW)))
+                .andReturn(renew)
+                .anyTimes();
+        EasyMock.expect(connection.prepareStatement(EasyMock.startsWith(RELEASE)))
+                .andReturn(release)
+                .anyTimes();
+        EasyMock.replay(seed, connection);
+        return connection;
+    }
+
+    /**
+     * Mocks the take over of {@link #NODE_ID}, which takes the millis.
+     */
+    private static PreparedStatement lease(final long millis) throws SQLException {
+        final ResultSet resultSet = EasyMock.niceMock(ResultSet.class);
+        EasyMock.expect(resultSet.next())
+                .andReturn(true);
+        EasyMock.expect(resultSet.getInt(1))
+                .andReturn(NODE_ID);
+        EasyMock.expect(resultSet.getInt(2))
+                .andReturn(7);
+        final PreparedStatement statement = EasyMock.niceMock(PreparedStatement.class);
+        EasyMock.expect(statement.executeQuery())
+                .andAnswer(() -> {
+                    Thread.sleep(millis);
+                    return resultSet;
+                });
+        EasyMock.replay(resultSet, statement);
+        return statement;
+    }
+
+    /**
+     * Mocks an update of the rows, which takes the millis.
+     */
+    private static PreparedStatement update(final int rows, final long millis) throws SQLException {
+        final PreparedStatement statement = EasyMock.niceMock(PreparedStatement.class);
+        EasyMock.expect(statement.executeUpdate())
+                .andAnswer(() -> {
+                    Thread.sleep(millis);
+                    return rows;
+                })
+                .anyTimes();
+        EasyMock.replay(statement);
+        return statement;
+    }
+
+    /**
+     * Mocks the factory of entity managers whose sessions run all work with
+     * the connection, failing while the database is not available.
+     */
+    private static EntityManagerFactory emf(final Connection connection, final AtomicBoolean available) {
+        final Session session = EasyMock.mock(Session.class);
+        session.doWork(EasyMock.anyObject(Work.class));
+        EasyMock.expectLastCall()
+                .andAnswer(() -> {
+                    ((Work) EasyMock.getCurrentArguments()[0]).execute(connection);
+                    return null;
+                })
+                .anyTimes();
+        final EntityTransaction transaction = EasyMock.niceMock(EntityTransaction.class);
+        final EntityManager     em          = EasyMock.niceMock(EntityManager.class);
+        EasyMock.expect(em.getTransaction())
+                .andReturn(transaction)
+                .anyTimes();
+        EasyMock.expect(em.unwrap(Session.class))
+                .andReturn(session)
+                .anyTimes();
+        final EntityManagerFactory emf = EasyMock.mock(EntityManagerFactory.class);
+        EasyMock.expect(emf.createEntityManager())
+                .andAnswer(() -> {
+                    if (!available.get()) {
+                        throw new PersistenceException("Connection refused");
+                    }
+                    return em;
+                })
+                .anyTimes();
+        EasyMock.replay(session, transaction, em, emf);
+        return emf;
+    }
+
+    private static final class SteppingClock extends Clock {
+
+        private Instant instant;
+
+        SteppingClock(final Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.easymock.EasyMock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.github.f4b6a3.uuid.UuidCreator;
+import com.github.stefanhh0.playground.uuid.TimePartitionManager.Interval;
+
+public class TimePartitionManagerTest {
+
+    @Test
+    void testTimestampRoundTrip() {
+        final UUID uuid = UuidCreator.getTimeOrdered();
+
+        final long timestamp = TimeOrderedUUIDUtil.getTimestamp(uuid.getMostSignificantBits());
+
+        assertThat(timestamp).isEqualTo(new UniqueID(uuid).getTimestamp());
+        assertThat(TimeOrderedUUIDUtil.toMostSignificantBits(timestamp)).isEqualTo(uuid.getMostSignificantBits());
+    }
+
+    @Test
+    void testLowerBoundEnclosesGeneratedIds() {
+        final Instant from = Instant.now()
+                                    .minusSeconds(1);
+        final UUID    uuid = UuidCreator.getTimeOrdered();
+        final Instant to   = Instant.now()
+                                    .plusSeconds(1);
+
+        // PostgreSQL compares uuids unsigned, the high bits are positive until 5236
+        assertThat(TimeOrderedUUIDUtil.lowerBound(from)).isLessThan(uuid);
+        assertThat(TimeOrderedUUIDUtil.lowerBound(to)).isGreaterThan(uuid);
+
+        final Instant instant = Instant.parse("2026-10-01T00:00:00Z");
+        assertThat(TimeOrderedUUIDUtil.lowerBound(instant)
+                                      .getMostSignificantBits()).isEqualTo(UuidCreator.getTimeOrdered(instant, 0, 0L)
+                                                                                      .getMostSignificantBits());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Interval.class)
+    void testPeriodNameRoundTrip(final Interval interval) {
+        final Instant instant = Instant.parse("2026-10-19T13:14:15Z");
+        final Instant start   = interval.start(instant);
+
+        assertThat(start).isBeforeOrEqualTo(instant);
+        assertThat(interval.next(start)).isAfter(instant);
+        assertThat(interval.parse(interval.format(start))).isEqualTo(start);
+    }
+
+    @Test
+    void testPartitionName() {
+        final TimePartitionManager manager = new TimePartitionManager(EasyMock.mock(EntityManagerFactory.class),
+                                                                      "uuid",
+                                                                      "entity_with_uuid",
+                                                                      Interval.MONTH);
+
+        assertThat(manager.getPartitionName(Instant.parse("2026-10-19T13:14:15Z"))).isEqualTo("entity_with_uuid_p202610");
+    }
+
+    @Test
+    void testScheduleSurvivesFailedRuns() throws InterruptedException {
+        final CountDownLatch       runs = new CountDownLatch(3);
+        final EntityManagerFactory emf  = EasyMock.mock(EntityManagerFactory.class);
+        EasyMock.expect(emf.createEntityManager())
+                .andAnswer(() -> {
+                    runs.countDown();
+                    throw new IllegalStateException("database is down");
+                })
+                .anyTimes();
+        EasyMock.replay(emf);
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            new TimePartitionManager(emf, "uuid", "entity_with_uuid", Interval.MONTH).schedule(executor,
+                                                                                               Duration.ofMillis(10),
+                                                                                               2,
+                                                                                               Duration.ofDays(365));
+
+            assertThat(runs.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.github.f4b6a3.uuid.UuidCreator;
+
+/**
+ * Measures the size and the decode throughput of a {@link UUIDArchive} of
+ * {@code 2^22} IDs of a single generator. Run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class UUIDArchiveBenchmarkTest {
+
+    private static final int COUNT = 1 << 22;
+
+    @Test
+    void testDecodeThroughput() throws IOException {
+        final long[] msb      = new long[COUNT];
+        final long[] lsb      = new long[COUNT];
+        long         expected = 0;
+        for (int i = 0; i < COUNT; i++) {
+            final UUID uuid = UuidCreator.getTimeOrdered();
+            msb[i]    = uuid.getMostSignificantBits();
+            lsb[i]    = uuid.getLeastSignificantBits();
+            expected += msb[i] ^ lsb[i];
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (UUIDArchive.Writer writer = new UUIDArchive.Writer(bytes)) {
+            writer.write(msb, lsb, 0, COUNT);
+        }
+        final byte[] archive = bytes.toByteArray();
+
+        // decodes block by block into the same arrays, as a streaming consumer would
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 20; run++) {
+            final long start   = System.nanoTime();
+            long       sum     = 0;
+            int        decoded = 0;
+            try (UUIDArchive.Reader reader = new UUIDArchive.Reader(new ByteArrayInputStream(archive))) {
+                final long[] blockMsb = new long[reader.getBlockSize()];
+                final long[] blockLsb = new long[reader.getBlockSize()];
+                while (reader.next()) {
+                    final int blockCount = reader.decode(blockMsb, blockLsb, 0);
+                    for (int i = 0; i < blockCount; i++) {
+                        sum += blockMsb[i] ^ blockLsb[i];
+                    }
+                    decoded += blockCount;
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            // checked outside of the timing, the sum keeps the decoding from being eliminated
+            assertThat(decoded).isEqualTo(COUNT);
+            assertThat(sum).isEqualTo(expected);
+        }
+
+        System.out.printf("Bytes per ID: %.2f%n", (double) archive.length / COUNT);
+        System.out.printf("Decoded %.0f million IDs per second%n", COUNT * 1000.0 / best);
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.f4b6a3.uuid.UuidCreator;
+
+public class UUIDArchiveTest {
+
+    @Test
+    void testRoundTripOfGeneratedIDs() throws IOException {
+        final int    count = 100_000;
+        final long[] msb   = new long[count];
+        final long[] lsb   = new long[count];
+        for (int i = 0; i < count; i++) {
+            final UUID uuid = UuidCreator.getTimeOrdered();
+            msb[i] = uuid.getMostSignificantBits();
+            lsb[i] = uuid.getLeastSignificantBits();
+        }
+
+        final byte[] archive = write(msb, lsb, UUIDArchive.DEFAULT_BLOCK_SIZE);
+
+        assertRoundTrip(archive, msb, lsb);
+        final double bytesPerID = (double) archive.length / count;
+        System.out.printf("Bytes per ID: %.2f%n", bytesPerID);
+        assertThat(bytesPerID).isLessThan(4);
+    }
+
+    @Test
+    void testRoundTripOfMixedIDs() throws IOException {
+        final Random random = new Random(42);
+        final int    count  = 10_000;
+        final long[] msb    = new long[count];
+        final long[] lsb    = new long[count];
+        for (int i = 0; i < count; i++) {
+            // unordered timestamps, random clock sequences and nodes, including the extremes
+            final long timestamp = i == 0 ? 0L : i == 1 ? 0x0FFFFFFFFFFFFFFFL : random.nextLong() >>> 4;
+            msb[i] = TimeOrderedUUIDUtil.toMostSignificantBits(timestamp);
+            lsb[i] = i == 2 ? 0L : i == 3 ? -1L : random.nextLong();
+        }
+
+        assertRoundTrip(write(msb, lsb, 1000), msb, lsb);
+        assertRoundTrip(write(msb, lsb, 3), msb, lsb);
+    }
+
+    @Test
+    void testSkipBlocksByMinAndMax() throws IOException {
+        final Instant start = Instant.parse("2022-01-01T00:00:00Z");
+        final int     count = 10_000;
+        final long[]  msb   = new long[count];
+        final long[]  lsb   = new long[count];
+        for (int i = 0; i < count; i++) {
+            final UUID uuid = UuidCreator.getTimeOrdered(start.plusSeconds(i), 0x1234, 0x0000AABBCCDDEEFFL);
+            msb[i] = uuid.getMostSignificantBits();
+            lsb[i] = uuid.getLeastSignificantBits();
+        }
+        final UUID from = TimeOrderedUUIDUtil.lowerBound(start.plusSeconds(5000));
+        final UUID to   = TimeOrderedUUIDUtil.lowerBound(start.plusSeconds(5100));
+
+        int decoded = 0;
+        int found   = 0;
+        try (UUIDArchive.Reader reader = new UUIDArchive.Reader(new ByteArrayInputStream(write(msb, lsb, 64)))) {
+            final long[] blockMsb = new long[reader.getBlockSize()];
+            final long[] blockLsb = new long[reader.getBlockSize()];
+            while (reader.next()) {
+                if (compare(reader.getMax(), from) < 0 || compare(reader.getMin(), to) >= 0) {
+                    continue;
+                }
+                decoded++;
+                final int blockCount = reader.decode(blockMsb, blockLsb, 0);
+                for (int i = 0; i < blockCount; i++) {
+                    final UUID id = new UUID(blockMsb[i], blockLsb[i]);
+                    if (compare(id, from) >= 0 && compare(id, to) < 0) {
+                        found++;
+                    }
+                }
+            }
+        }
+
+        assertThat(found).isEqualTo(100);
+        assertThat(decoded).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void testEmptyArchive() throws IOException {
+        try (UUIDArchive.Reader reader = new UUIDArchive.Reader(new ByteArrayInputStream(write(new long[0],
+                                                                                               new long[0],
+                                                                                               16)))) {
+            assertThat(reader.next()).isFalse();
+            assertThat(reader.next()).isFalse();
+        }
+    }
+
+    @Test
+    void testRejectsOtherVersions() throws IOException {
+        try (UUIDArchive.Writer writer = new UUIDArchive.Writer(new ByteArrayOutputStream())) {
+            assertThatThrownBy(() -> writer.write(UUID.randomUUID())).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testPackAndUnpack() {
+        final Random random = new Random(7);
+        for (int width = 0; width <= 64; width++) {
+            final long   mask   = width == 64 ? -1L : (1L << width) - 1;
+            final long[] values = new long[131];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextLong() & mask;
+            }
+            final long[] words    = new long[1 + values.length + 1];
+            final int    end      = UUIDArchive.pack(values, values.length, width, words, 1);
+            final long[] unpacked = new long[values.length];
+
+            assertThat(UUIDArchive.unpack(words, 1, width, unpacked, 0, values.length)).isEqualTo(end);
+            assertThat(unpacked).isEqualTo(values);
+        }
+    }
+
+    private static byte[] write(final long[] msb, final long[] lsb, final int blockSize) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (UUIDArchive.Writer writer = new UUIDArchive.Writer(bytes, blockSize)) {
+            writer.write(msb, lsb, 0, msb.length);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int read(final byte[] archive, final long[] msb, final long[] lsb) throws IOException {
+        int count = 0;
+        try (UUIDArchive.Reader reader = new UUIDArchive.Reader(new ByteArrayInputStream(archive))) {
+            while (reader.next()) {
+                count += reader.decode(msb, lsb, count);
+            }
+        }
+        return count;
+    }
+
+    private static void assertRoundTrip(final byte[] archive, final long[] msb, final long[] lsb) throws IOException {
+        final long[] decodedMsb = new long[msb.length];
+        final long[] decodedLsb = new long[lsb.length];
+
+        assertThat(read(archive, decodedMsb, decodedLsb)).isEqualTo(msb.length);
+        assertThat(decodedMsb).isEqualTo(msb);
+        assertThat(decodedLsb).isEqualTo(lsb);
+    }
+
+    private static int compare(final UUID a, final UUID b) {
+        return UUIDRadixSort.compare(a.getMostSignificantBits(),
+                                     a.getLeastSignificantBits(),
+                                     b.getMostSignificantBits(),
+                                     b.getLeastSignificantBits());
+    }
+}
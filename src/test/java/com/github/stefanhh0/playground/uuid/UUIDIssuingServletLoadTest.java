@@ -0,0 +1,147 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs {@link UUIDIssuingServlet} in an embedded jetty and measures the
+ * latency of concurrent clients.
+ */
+public class UUIDIssuingServletLoadTest {
+
+    private static final int CLIENTS  = 16;
+    private static final int REQUESTS = 50;
+    private static final int COUNT    = 10000;
+
+    private static Server     server;
+    private static URI        uri;
+    private static HttpClient client;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        server = new Server(0);
+        final ServletContextHandler context = new ServletContextHandler();
+        final ServletHolder         holder  = context.addServlet(UUIDIssuingServlet.class, "/ids");
+        holder.setAsyncSupported(true);
+        final ServletHolder failing = new ServletHolder(new UUIDIssuingServlet(() -> {
+            throw new IllegalStateException("Lease of node ID 0 has expired");
+        }));
+        failing.setAsyncSupported(true);
+        context.addServlet(failing, "/failing");
+        server.setHandler(context);
+        server.start();
+        uri    = URI.create("http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/ids");
+        client = HttpClient.newBuilder()
+                           .version(HttpClient.Version.HTTP_1_1)
+                           .build();
+    }
+
+    @AfterAll
+    static void stopServer() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    void testConcurrentBinaryBatches() throws Exception {
+        final ExecutorService      executor  = Executors.newFixedThreadPool(CLIENTS);
+        final List<Future<long[]>> futures   = new ArrayList<>();
+        final UniqueIDSet          issued    = new UniqueIDSet(CLIENTS * REQUESTS * COUNT);
+        final long[]               latencies = new long[CLIENTS * REQUESTS];
+        try {
+            for (int c = 0; c < CLIENTS; c++) {
+                futures.add(executor.submit(() -> {
+                    final long[] clientLatencies = new long[REQUESTS];
+                    for (int r = 0; r < REQUESTS; r++) {
+                        final long                 start    = System.nanoTime();
+                        final HttpResponse<byte[]> response = get("?count=" + COUNT);
+                        clientLatencies[r] = System.nanoTime() - start;
+
+                        assertThat(response.statusCode()).isEqualTo(200);
+                        final ByteBuffer body = ByteBuffer.wrap(response.body());
+                        assertThat(body.remaining()).isEqualTo(COUNT * 16);
+                        synchronized (issued) {
+                            while (body.hasRemaining()) {
+                                assertThat(issued.add(body.getLong(), body.getLong())).isTrue();
+                            }
+                        }
+                    }
+                    return clientLatencies;
+                }));
+            }
+            for (int c = 0; c < CLIENTS; c++) {
+                System.arraycopy(futures.get(c)
+                                        .get(),
+                                 0,
+                                 latencies,
+                                 c * REQUESTS,
+                                 REQUESTS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Arrays.sort(latencies);
+        final long p50 = latencies[latencies.length / 2] / 1000000;
+        final long p99 = latencies[latencies.length * 99 / 100] / 1000000;
+        System.out.printf("%d clients, %d ids per request: p50 %d ms, p99 %d ms%n", CLIENTS, COUNT, p50, p99);
+        assertThat(issued.size()).isEqualTo(CLIENTS * REQUESTS * COUNT);
+        assertThat(p99).isLessThan(2000);
+    }
+
+    @Test
+    void testTextFormat() throws Exception {
+        final HttpResponse<byte[]> response = get("?count=3&format=text");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        final String[] lines = new String(response.body(), StandardCharsets.US_ASCII).split("\n");
+        assertThat(lines).hasSize(3);
+        for (final String line : lines) {
+            final UUID id = UUID.fromString(line.replaceFirst("(.{8})(.{4})(.{4})(.{4})(.{12})", "$1-$2-$3-$4-$5"));
+            assertThat(id.version()).isEqualTo(6);
+        }
+    }
+
+    @Test
+    void testInvalidCount() throws Exception {
+        assertThat(get("?count=0").statusCode()).isEqualTo(400);
+        assertThat(get("?count=" + (UUIDIssuingServlet.MAX_COUNT + 1)).statusCode()).isEqualTo(400);
+        assertThat(get("?count=x").statusCode()).isEqualTo(400);
+        assertThat(get("?format=json").statusCode()).isEqualTo(400);
+    }
+
+    @Test
+    void testUnavailableWhileGeneratorFails() throws Exception {
+        final HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri.resolve("/failing?count=10"))
+                                                                     .build(),
+                                                          HttpResponse.BodyHandlers.ofByteArray());
+
+        assertThat(response.statusCode()).isEqualTo(503);
+    }
+
+    private static HttpResponse<byte[]> get(final String query) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(uri + query))
+                                      .build(),
+                           HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.f4b6a3.uuid.UuidCreator;
+import com.github.stefanhh0.playground.uuid.UUIDMerger.Source;
+
+public class UUIDMergerTest {
+
+    @Test
+    void testMergeWithDuplicates() {
+        final int    size = 10_000;
+        final long[] msb  = new long[size];
+        final long[] lsb  = new long[size];
+        for (int i = 0; i < size; i++) {
+            final UUID uuid = UuidCreator.getTimeOrdered();
+            msb[i] = uuid.getMostSignificantBits();
+            lsb[i] = uuid.getLeastSignificantBits();
+        }
+
+        // overlapping slices of the same sorted ids, as exported by several nodes
+        final List<Source> sources = List.of(Source.of(msb, lsb, 0, 6000),
+                                             Source.of(msb, lsb, 4000, size),
+                                             Source.of(msb, lsb, 2000, 3000),
+                                             Source.of(msb, lsb, 0, 0));
+        final List<UUID>   merged  = new ArrayList<>();
+
+        final long count = UUIDMerger.merge(sources, (m, l) -> merged.add(new UUID(m, l)));
+
+        assertThat(count).isEqualTo(size);
+        assertThat(merged).hasSize(size);
+        for (int i = 0; i < size; i++) {
+            assertThat(merged.get(i)).isEqualTo(new UUID(msb[i], lsb[i]));
+        }
+    }
+
+    @Test
+    void testMergeUnsortedSource() {
+        final long[] msb = { 2, 1 };
+        final long[] lsb = { 0, 0 };
+
+        assertThatIllegalStateException().isThrownBy(() -> UUIDMerger.merge(List.of(Source.of(msb, lsb)),
+                                                                            (m, l) -> {
+                                                                            }));
+    }
+}
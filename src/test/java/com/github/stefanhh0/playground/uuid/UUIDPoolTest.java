@@ -0,0 +1,115 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class UUIDPoolTest {
+
+    @Test
+    void testIssuesIDsInOrder() throws InterruptedException {
+        final AtomicLong sequence = new AtomicLong();
+        try (UUIDPool pool = new UUIDPool(10, 3, Duration.ofSeconds(10), () -> new UUID(0L,
+                                                                                       sequence.getAndIncrement()))) {
+            final long[] ids = new long[2 * 25];
+            takeAll(pool, ids, 25);
+            takeAll(pool, ids, 25);
+
+            for (int i = 0; i < 25; i++) {
+                assertThat(ids[2 * i + 1]).isEqualTo(25 + i);
+            }
+        }
+    }
+
+    @Test
+    void testDiscardsStaleChunks() throws InterruptedException {
+        final AtomicLong sequence = new AtomicLong();
+        try (UUIDPool pool = new UUIDPool(10, 3, Duration.ofMillis(50), () -> new UUID(0L,
+                                                                                      sequence.getAndIncrement()))) {
+            final long[] ids = new long[2 * 5];
+            takeAll(pool, ids, 5);
+            assertThat(ids[1]).isZero();
+
+            // all chunks are filled by now, none of them is handed out anymore
+            Thread.sleep(100);
+            takeAll(pool, ids, 1);
+            assertThat(ids[1]).isGreaterThanOrEqualTo(30);
+        }
+    }
+
+    @Test
+    void testFailsAndRecoversWithGenerator() throws InterruptedException {
+        final AtomicBoolean failing  = new AtomicBoolean(true);
+        final AtomicLong    sequence = new AtomicLong();
+        try (UUIDPool pool = new UUIDPool(10, 3, Duration.ofSeconds(10), () -> {
+            if (failing.get()) {
+                throw new IllegalStateException("Lease of node ID 0 has expired");
+            }
+            return new UUID(0L, sequence.getAndIncrement());
+        })) {
+            final long[] ids = new long[2];
+
+            awaitAvailable(pool);
+            assertThatThrownBy(() -> pool.take(ids, 0, 1)).isInstanceOf(IllegalStateException.class)
+                                                          .hasRootCauseMessage("Lease of node ID 0 has expired");
+
+            failing.set(false);
+            final long deadline = System.nanoTime() + Duration.ofSeconds(10)
+                                                              .toNanos();
+            int taken = 0;
+            while (taken == 0) {
+                assertThat(System.nanoTime() - deadline).isNegative();
+                awaitAvailable(pool);
+                try {
+                    taken = pool.take(ids, 0, 1);
+                } catch (final IllegalStateException e) {
+                    // not retried yet
+                    Thread.sleep(10);
+                }
+            }
+            assertThat(ids[1]).isZero();
+        }
+    }
+
+    @Test
+    void testNotifiesWaitersOnClose() throws InterruptedException {
+        final UUIDPool       pool   = new UUIDPool(10, 3, Duration.ofSeconds(10), () -> {
+                                        throw new IllegalStateException("Lease of node ID 0 has expired");
+                                    });
+        final CountDownLatch closed = new CountDownLatch(1);
+        pool.close();
+        pool.whenAvailable(closed::countDown);
+
+        assertThat(closed.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThatThrownBy(() -> pool.take(new long[2], 0, 1)).isInstanceOf(IllegalStateException.class)
+                                                              .hasMessage("pool is closed");
+    }
+
+    /**
+     * Takes the IDs, waiting for refills like the servlet does.
+     */
+    private static void takeAll(final UUIDPool pool, final long[] ids, final int count) throws InterruptedException {
+        int taken = 0;
+        while (taken < count) {
+            final int batch = pool.take(ids, taken << 1, count - taken);
+            if (batch == 0) {
+                awaitAvailable(pool);
+            }
+            taken += batch;
+        }
+    }
+
+    private static void awaitAvailable(final UUIDPool pool) throws InterruptedException {
+        final CountDownLatch available = new CountDownLatch(1);
+        pool.whenAvailable(available::countDown);
+        assertThat(available.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+}
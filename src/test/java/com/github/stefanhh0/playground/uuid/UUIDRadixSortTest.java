@@ -0,0 +1,106 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.github.f4b6a3.uuid.UuidCreator;
+
+public class UUIDRadixSortTest {
+
+    private static final Comparator<UUID> UNSIGNED = (a, b) -> UUIDRadixSort.compare(a.getMostSignificantBits(),
+                                                                                      a.getLeastSignificantBits(),
+                                                                                      b.getMostSignificantBits(),
+                                                                                      b.getLeastSignificantBits());
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1, 63, 64, 1000, 200_000 })
+    void testSortRandom(final int size) {
+        final Random random = new Random(size);
+        final long[] msb    = random.longs(size)
+                                    .toArray();
+        final long[] lsb    = random.longs(size)
+                                    .toArray();
+
+        assertSortedLikeBoxed(msb, lsb, false);
+        assertSortedLikeBoxed(msb, lsb, true);
+    }
+
+    @Test
+    void testSortTimeOrdered() {
+        final int    size = 300_000;
+        final long[] msb  = new long[size];
+        final long[] lsb  = new long[size];
+        for (int i = 0; i < size; i++) {
+            final UUID uuid = UuidCreator.getTimeOrdered();
+            msb[size - 1 - i] = uuid.getMostSignificantBits();
+            lsb[size - 1 - i] = uuid.getLeastSignificantBits();
+        }
+
+        assertSortedLikeBoxed(msb, lsb, false);
+        assertSortedLikeBoxed(msb, lsb, true);
+    }
+
+    @Test
+    void testParallelSortInPool() {
+        // the common pool may have a parallelism of 1, which falls back to sort
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final Random random    = new Random(4);
+            final long[] msb       = random.longs(500_000)
+                                           .toArray();
+            final long[] lsb       = random.longs(500_000)
+                                           .toArray();
+            final long[] msbSorted = msb.clone();
+            final long[] lsbSorted = lsb.clone();
+            UUIDRadixSort.sort(msbSorted, lsbSorted);
+
+            UUIDRadixSort.parallelSort(msb, lsb, pool);
+
+            assertThat(msb).isEqualTo(msbSorted);
+            assertThat(lsb).isEqualTo(lsbSorted);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testUniqueIDCompareTo() {
+        final UniqueID low  = new UniqueID(new UUID(0x7FFFFFFFFFFFFFFFL, 0L));
+        final UniqueID high = new UniqueID(new UUID(0x8000000000000000L, 0L));
+
+        assertThat(low).isLessThan(high);
+        assertThat(high).isGreaterThan(low);
+        assertThat(low).isEqualByComparingTo(new UniqueID(new UUID(0x7FFFFFFFFFFFFFFFL, 0L)));
+        assertThat(low).isEqualTo(new UniqueID(new UUID(0x7FFFFFFFFFFFFFFFL, 0L)));
+    }
+
+    private static void assertSortedLikeBoxed(final long[] msbInput, final long[] lsbInput, final boolean parallel) {
+        final long[] msb      = msbInput.clone();
+        final long[] lsb      = lsbInput.clone();
+        final UUID[] expected = new UUID[msb.length];
+        for (int i = 0; i < msb.length; i++) {
+            expected[i] = new UUID(msb[i], lsb[i]);
+        }
+        Arrays.sort(expected, UNSIGNED);
+
+        if (parallel) {
+            UUIDRadixSort.parallelSort(msb, lsb);
+        } else {
+            UUIDRadixSort.sort(msb, lsb);
+        }
+
+        assertThat(UUIDRadixSort.isSorted(msb, lsb, 0, msb.length)).isTrue();
+        for (int i = 0; i < msb.length; i++) {
+            assertThat(new UUID(msb[i], lsb[i])).isEqualTo(expected[i]);
+        }
+    }
+}
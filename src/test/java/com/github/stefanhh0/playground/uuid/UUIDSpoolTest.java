@@ -0,0 +1,168 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.f4b6a3.uuid.UuidCreator;
+
+public class UUIDSpoolTest {
+
+    private static final int HEADER_BYTES = 4 * Long.BYTES;
+
+    private static final int RECORD_BYTES = 3 * Long.BYTES;
+
+    private static final UUIDSpool.Sink FAILING = (msb, lsb, count) -> {
+        throw new IllegalStateException("database is down");
+    };
+
+    @Test
+    void testDrainsSegmentsInOrder(@TempDir final Path directory) throws IOException {
+        final RecordingSink sink = new RecordingSink();
+        final List<UUID>    ids  = generate(250);
+
+        try (UUIDSpool spool = UUIDSpool.open(sink, directory, 100)) {
+            ids.forEach(spool::append);
+        }
+
+        assertThat(sink.getIds()).isEqualTo(ids);
+        assertThat(segments(directory)).isEmpty();
+    }
+
+    @Test
+    void testReplaysSegmentsLeftOverByCrash(@TempDir final Path directory) throws IOException, InterruptedException {
+        final List<UUID> ids = generate(250);
+        crash(directory, 100, ids);
+        assertThat(segments(directory)).hasSize(3);
+
+        final RecordingSink sink = new RecordingSink();
+        try (UUIDSpool spool = UUIDSpool.open(sink, directory, 100)) {
+            spool.append(ids.get(0));
+        }
+
+        // the unwritten records of the last segment are skipped, the repeated id is left to the sink
+        final List<UUID> expected = new ArrayList<>(ids);
+        expected.add(ids.get(0));
+        assertThat(sink.getIds()).isEqualTo(expected);
+        assertThat(segments(directory)).isEmpty();
+    }
+
+    @Test
+    void testSkipsTornRecords(@TempDir final Path directory) throws IOException, InterruptedException {
+        final List<UUID> ids = generate(10);
+        crash(directory, 100, ids);
+        final Path segment = segments(directory).get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // the msb of record 3 and the checksum of record 7 did not make it to the file
+            write(channel, HEADER_BYTES + 3 * RECORD_BYTES, 42L);
+            write(channel, HEADER_BYTES + 7 * RECORD_BYTES + 2 * Long.BYTES, 0L);
+        }
+
+        final RecordingSink sink = new RecordingSink();
+        UUIDSpool.open(sink, directory, 100)
+                 .close();
+
+        final List<UUID> expected = new ArrayList<>(ids);
+        expected.remove(7);
+        expected.remove(3);
+        assertThat(sink.getIds()).isEqualTo(expected);
+    }
+
+    @Test
+    void testDeletesSegmentWithoutHeader(@TempDir final Path directory) throws IOException {
+        // left over by a crash while a segment was created
+        Files.write(directory.resolve("segment-0000000000000000000.spool"), new byte[HEADER_BYTES]);
+        Files.createFile(directory.resolve("segment-0000000000000000001.spool"));
+
+        final RecordingSink sink = new RecordingSink();
+        final List<UUID>    ids  = generate(5);
+        try (UUIDSpool spool = UUIDSpool.open(sink, directory, 100)) {
+            ids.forEach(spool::append);
+        }
+
+        assertThat(sink.getIds()).isEqualTo(ids);
+        assertThat(segments(directory)).isEmpty();
+    }
+
+    @Test
+    void testKeepsSegmentsThatFailedToDrain(@TempDir final Path directory) throws IOException {
+        final UUIDSpool spool = UUIDSpool.open(FAILING, directory, 100);
+        generate(150).forEach(spool::append);
+
+        assertThatThrownBy(spool::close).isInstanceOf(IllegalStateException.class)
+                                        .hasRootCauseMessage("database is down");
+        assertThat(segments(directory)).hasSize(2);
+        assertThatThrownBy(() -> spool.append(UUID.randomUUID())).isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Appends the IDs and leaves the spool without closing it, as a crashed
+     * process would. Nothing is drained, as the sink fails.
+     */
+    private static void crash(final Path directory, final int recordsPerSegment, final List<UUID> ids)
+            throws IOException, InterruptedException {
+        final UUIDSpool spool = UUIDSpool.open(FAILING, directory, recordsPerSegment);
+        ids.forEach(spool::append);
+        spool.flush();
+        // the failed drains must not touch the segments replayed by the next spool
+        while (spool.getPendingSegments() > 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static List<UUID> generate(final int count) {
+        final List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UuidCreator.getTimeOrdered());
+        }
+        return ids;
+    }
+
+    private static List<Path> segments(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted()
+                        .toList();
+        }
+    }
+
+    private static void write(final FileChannel channel, final long position, final long value) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES)
+                                            .order(ByteOrder.LITTLE_ENDIAN)
+                                            .putLong(0, value);
+        channel.write(buffer, position);
+    }
+
+    private static final class RecordingSink implements UUIDSpool.Sink {
+
+        private final List<UUID> ids = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public int insert(final long[] msb, final long[] lsb, final int count) {
+            for (int i = 0; i < count; i++) {
+                ids.add(new UUID(msb[i], lsb[i]));
+            }
+            return count;
+        }
+
+        List<UUID> getIds() {
+            synchronized (ids) {
+                return new ArrayList<>(ids);
+            }
+        }
+    }
+}
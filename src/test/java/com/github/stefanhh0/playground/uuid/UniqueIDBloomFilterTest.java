@@ -0,0 +1,74 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class UniqueIDBloomFilterTest {
+
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    @Test
+    void testScalesWithinFalsePositiveProbability() {
+        // far more IDs than expected, so several stages are added
+        final UniqueIDBloomFilter filter = UniqueIDBloomFilter.create(10_000, FALSE_POSITIVE_PROBABILITY);
+        final Random              random = new Random(1);
+        final int                 size   = 200_000;
+        final long[]              msb    = random.longs(size)
+                                                 .toArray();
+        final long[]              lsb    = random.longs(size)
+                                                 .toArray();
+        for (int i = 0; i < size; i++) {
+            filter.put(msb[i], lsb[i]);
+        }
+
+        for (int i = 0; i < size; i++) {
+            assertThat(filter.mightContain(msb[i], lsb[i])).isTrue();
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.mightContain(random.nextLong(), random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        assertThat((double) falsePositives / size).isLessThan(FALSE_POSITIVE_PROBABILITY);
+        assertThat(filter.getCount()).isBetween((long) (size * (1 - FALSE_POSITIVE_PROBABILITY)), (long) size);
+    }
+
+    @Test
+    void testPutReportsContainedIds() {
+        final UniqueIDBloomFilter filter = UniqueIDBloomFilter.create(100, FALSE_POSITIVE_PROBABILITY);
+
+        assertThat(filter.isEmpty()).isTrue();
+        assertThat(filter.put(1L, 2L)).isTrue();
+        assertThat(filter.put(1L, 2L)).isFalse();
+        assertThat(filter.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testPersistence(@TempDir final Path directory) throws IOException {
+        final Random              random = new Random(2);
+        final int                 size   = 50_000;
+        final long[]              msb    = random.longs(size)
+                                                 .toArray();
+        final long[]              lsb    = random.longs(size)
+                                                 .toArray();
+        final UniqueIDBloomFilter filter = UniqueIDBloomFilter.open(directory, 10_000, FALSE_POSITIVE_PROBABILITY);
+        for (int i = 0; i < size; i++) {
+            filter.put(msb[i], lsb[i]);
+        }
+        filter.flush();
+
+        final UniqueIDBloomFilter reopened = UniqueIDBloomFilter.open(directory, 10_000, FALSE_POSITIVE_PROBABILITY);
+
+        assertThat(reopened.getCount()).isEqualTo(filter.getCount());
+        for (int i = 0; i < size; i++) {
+            assertThat(reopened.mightContain(msb[i], lsb[i])).isTrue();
+        }
+    }
+}
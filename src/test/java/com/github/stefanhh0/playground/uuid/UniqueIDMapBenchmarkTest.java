@@ -0,0 +1,143 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.github.f4b6a3.uuid.UuidCreator;
+
+/**
+ * Compares the memory used per entry of {@link UniqueIDMap},
+ * {@link UniqueIDLongMap} and {@link UniqueIDSet}, on the heap and off-heap,
+ * with a {@code HashMap<UUID, Long>}. All are presized to a capacity of
+ * {@code 2^20} and filled to their load factor of 0.75. Run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class UniqueIDMapBenchmarkTest {
+
+    private static final int ENTRIES = 3 << 18;
+
+    private static final int CAPACITY = 1 << 20;
+
+    @Test
+    void testMemoryPerEntry() throws InterruptedException {
+        final long[] msb    = new long[ENTRIES];
+        final long[] lsb    = new long[ENTRIES];
+        final Long[] values = new Long[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            final UUID uuid = UuidCreator.getTimeOrdered();
+            msb[i]    = uuid.getMostSignificantBits();
+            lsb[i]    = uuid.getLeastSignificantBits();
+            values[i] = (long) i;
+        }
+
+        final Usage hashMap = usagePerEntry(n -> {
+            final Map<UUID, Long> map = new HashMap<>(CAPACITY);
+            for (int i = 0; i < n; i++) {
+                map.put(new UUID(msb[i], lsb[i]), values[i]);
+            }
+            return map;
+        });
+        final Usage[] map     = new Usage[2];
+        final Usage[] longMap = new Usage[2];
+        final Usage[] set     = new Usage[2];
+        for (int mode = 0; mode < 2; mode++) {
+            final boolean offHeap = mode == 1;
+            map[mode]     = usagePerEntry(n -> {
+                final UniqueIDMap<Long> uniqueIDMap = new UniqueIDMap<>(n, offHeap);
+                for (int i = 0; i < n; i++) {
+                    uniqueIDMap.put(msb[i], lsb[i], values[i]);
+                }
+                return uniqueIDMap;
+            });
+            longMap[mode] = usagePerEntry(n -> {
+                final UniqueIDLongMap uniqueIDLongMap = new UniqueIDLongMap(n, offHeap);
+                for (int i = 0; i < n; i++) {
+                    uniqueIDLongMap.put(msb[i], lsb[i], i);
+                }
+                return uniqueIDLongMap;
+            });
+            set[mode]     = usagePerEntry(n -> {
+                final UniqueIDSet uniqueIDSet = new UniqueIDSet(n, offHeap);
+                for (int i = 0; i < n; i++) {
+                    uniqueIDSet.add(msb[i], lsb[i]);
+                }
+                return uniqueIDSet;
+            });
+        }
+
+        // the values are shared, so the boxed longs are not counted
+        System.out.printf("Bytes per entry (heap + off-heap) at load factor 0.75:%n");
+        System.out.printf("  HashMap<UUID, Long>:         %s%n", hashMap);
+        System.out.printf("  UniqueIDMap<Long>:           %s, off-heap keys %s%n", map[0], map[1]);
+        System.out.printf("  UniqueIDLongMap:             %s, off-heap %s%n", longMap[0], longMap[1]);
+        System.out.printf("  UniqueIDSet:                 %s, off-heap %s%n", set[0], set[1]);
+
+        // 24 bytes per slot against a node, a UUID and the table slot per entry
+        assertThat(longMap[0].total()).isLessThan(hashMap.total() / 2);
+        assertThat(set[0].total()).isLessThan(longMap[0].total());
+        assertThat(longMap[1].heap).isLessThan(1);
+        assertThat(set[1].heap).isLessThan(1);
+        assertThat(longMap[1].offHeap).isCloseTo(longMap[0].heap, within(1.0));
+    }
+
+    private static Usage usagePerEntry(final IntFunction<Object> factory) throws InterruptedException {
+        final long   heapBefore    = usedHeap();
+        final long   offHeapBefore = usedDirect();
+        final Object result        = factory.apply(ENTRIES);
+        final long   heapAfter     = usedHeap();
+        final long   offHeapAfter  = usedDirect();
+        assertThat(result).isNotNull();
+        return new Usage((double) (heapAfter - heapBefore) / ENTRIES, (double) (offHeapAfter - offHeapBefore) / ENTRIES);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        // direct buffers of collected tables are freed by their cleaners
+        Thread.sleep(100);
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirect() {
+        long used = 0;
+        for (final BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                used += pool.getMemoryUsed();
+            }
+        }
+        return used;
+    }
+
+    private static final class Usage {
+
+        private final double heap;
+        private final double offHeap;
+
+        Usage(final double heap, final double offHeap) {
+            this.heap    = heap;
+            this.offHeap = offHeap;
+        }
+
+        double total() {
+            return heap + offHeap;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f + %.1f", heap, offHeap);
+        }
+    }
+}
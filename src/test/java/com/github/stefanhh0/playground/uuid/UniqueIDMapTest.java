@@ -0,0 +1,111 @@
+package com.github.stefanhh0.playground.uuid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class UniqueIDMapTest {
+
+    private static final int OPERATIONS = 200_000;
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void testMapAgainstHashMap(final boolean offHeap) {
+        final Random              random   = new Random(1);
+        final UniqueIDMap<String> map      = new UniqueIDMap<>(0, offHeap);
+        final Map<UUID, String>   expected = new HashMap<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            final UUID   key   = randomKey(random);
+            final String value = Integer.toString(i);
+            if (random.nextInt(4) == 0) {
+                assertThat(map.remove(key.getMostSignificantBits(), key.getLeastSignificantBits())).isEqualTo(expected.remove(key));
+            } else {
+                assertThat(map.put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value)).isEqualTo(expected.put(key, value));
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(map.get(key.getMostSignificantBits(), key.getLeastSignificantBits())).isEqualTo(value));
+        final Map<UUID, String> actual = new HashMap<>();
+        map.forEach((msb, lsb, value) -> actual.put(new UUID(msb, lsb), value));
+        assertThat(actual).isEqualTo(expected);
+
+        map.clear();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.get(0L, 0L)).isNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void testLongMapAgainstHashMap(final boolean offHeap) {
+        final Random          random   = new Random(2);
+        final UniqueIDLongMap map      = new UniqueIDLongMap(1000, offHeap);
+        final Map<UUID, Long> expected = new HashMap<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            final UUID key = randomKey(random);
+            if (random.nextInt(4) == 0) {
+                assertThat(map.remove(key.getMostSignificantBits(), key.getLeastSignificantBits())).isEqualTo(expected.remove(key) != null);
+            } else {
+                assertThat(map.put(key.getMostSignificantBits(), key.getLeastSignificantBits(), i)).isEqualTo(expected.put(key, (long) i) == null);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(map.getOrDefault(key.getMostSignificantBits(), key.getLeastSignificantBits(), -1L)).isEqualTo(value));
+        assertThat(map.getOrDefault(1000L, 0L, -1L)).isEqualTo(-1L);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void testSetAgainstHashSet(final boolean offHeap) {
+        final Random      random   = new Random(3);
+        final UniqueIDSet set      = new UniqueIDSet(0, offHeap);
+        final Set<UUID>   expected = new HashSet<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            final UUID key = randomKey(random);
+            if (random.nextInt(4) == 0) {
+                assertThat(set.remove(key.getMostSignificantBits(), key.getLeastSignificantBits())).isEqualTo(expected.remove(key));
+            } else {
+                assertThat(set.add(key.getMostSignificantBits(), key.getLeastSignificantBits())).isEqualTo(expected.add(key));
+            }
+        }
+
+        assertThat(set.size()).isEqualTo(expected.size());
+        final Set<UUID> actual = new HashSet<>();
+        set.forEach((msb, lsb) -> actual.add(new UUID(msb, lsb)));
+        assertThat(actual).isEqualTo(expected);
+        assertThat(set.contains(new UniqueID(new UUID(1000L, 0L)))).isFalse();
+    }
+
+    @Test
+    void testDirectStorageAcrossPages() {
+        // pages of 16 longs, the last one partial
+        final LongStorage storage = LongStorage.allocateDirect(1000, 4);
+        for (int i = 0; i < storage.length(); i++) {
+            storage.set(i, i * 31L);
+        }
+
+        assertThat(storage.length()).isEqualTo(1000);
+        assertThat(storage.isOffHeap()).isTrue();
+        for (int i = 0; i < storage.length(); i++) {
+            assertThat(storage.get(i)).isEqualTo(i * 31L);
+        }
+    }
+
+    /**
+     * Draws from a small key space, including the nil UUID, to get hits for
+     * updates and removals.
+     */
+    private static UUID randomKey(final Random random) {
+        return new UUID(random.nextInt(1000), random.nextInt(100));
+    }
+}